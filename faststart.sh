@@ -0,0 +1,44 @@
+#!/bin/bash
+
+# Fast-start launcher: Spring AOT + a class data sharing (CDS) archive
+#
+#   ./faststart.sh build   - mvn -Pfaststart package, extract the jar, run the CDS training run
+#   ./faststart.sh run     - start the app from the extracted jar with the archive
+#
+# The training run starts the application context with spring.context.exit=onRefresh,
+# so the JVM exits as soon as the context is up and dumps every class it loaded
+# into target/faststart/application.jsa. Rebuild the archive whenever the jar changes;
+# the JVM ignores (with a warning) an archive that does not match its classpath.
+
+set -e
+cd "$(dirname "$0")"
+
+APP_DIR=target/faststart
+ARCHIVE=$APP_DIR/application.jsa
+JAR=$APP_DIR/spring-boot-mail-0.0.1-SNAPSHOT.jar
+JAVA_FLAGS="-Dspring.aot.enabled=true -Dspring.profiles.active=faststart"
+
+case "$1" in
+    build)
+        # mvnw is not checked in as executable
+        sh ./mvnw -B -q -Pfaststart -DskipTests package
+        rm -rf "$APP_DIR"
+        # The tools jar mode lays the jar out as plain jars on a classpath, which CDS needs
+        java -Djarmode=tools -jar target/spring-boot-mail-0.0.1-SNAPSHOT.jar extract --destination "$APP_DIR"
+        echo "Training run..."
+        java -XX:ArchiveClassesAtExit="$ARCHIVE" -Dspring.context.exit=onRefresh $JAVA_FLAGS -jar "$JAR"
+        echo "CDS archive written to $ARCHIVE"
+        ;;
+    run)
+        shift
+        if [ ! -f "$ARCHIVE" ]; then
+            echo "No CDS archive; run ./faststart.sh build first" >&2
+            exit 1
+        fi
+        exec java -XX:SharedArchiveFile="$ARCHIVE" $JAVA_FLAGS "$@" -jar "$JAR"
+        ;;
+    *)
+        echo "Usage: $0 build|run [jvm options]" >&2
+        exit 1
+        ;;
+esac
@@ -0,0 +1,39 @@
+#!/bin/bash
+
+# Firestore emulator performance suite (NotificationServicePerformanceTests)
+#
+#   ./firestore-perf.sh [extra maven args]      e.g. -Dperf.update-baseline=true
+#
+# Starts the emulator with gcloud unless one already answers at FIRESTORE_EMULATOR_HOST,
+# runs mvn -Pfirestore-perf test against it, and stops the emulator it started.
+# Results: target/firestore-perf-results.properties; baseline:
+# src/test/resources/firestore-perf-baseline.properties. The suite fails until the
+# baseline has an entry for every measurement, so record one first with
+# -Dperf.update-baseline=true.
+
+set -e
+cd "$(dirname "$0")"
+
+HOST=${FIRESTORE_EMULATOR_HOST:-localhost:8080}
+EMULATOR_PID=
+
+stop_emulator() {
+    if [ -n "$EMULATOR_PID" ]; then
+        kill "$EMULATOR_PID" 2>/dev/null || true
+        wait "$EMULATOR_PID" 2>/dev/null || true
+    fi
+}
+trap stop_emulator EXIT
+
+if ! curl -s -o /dev/null "http://$HOST"; then
+    mkdir -p target
+    gcloud emulators firestore start --host-port="$HOST" > target/firestore-emulator.log 2>&1 &
+    EMULATOR_PID=$!
+    for _ in $(seq 1 60); do
+        curl -s -o /dev/null "http://$HOST" && break
+        sleep 1
+    done
+    curl -s -o /dev/null "http://$HOST" || { echo "Firestore emulator did not start on $HOST" >&2; exit 1; }
+fi
+
+sh ./mvnw -B -Pfirestore-perf -Dfirestore.emulator.host="$HOST" test "$@"
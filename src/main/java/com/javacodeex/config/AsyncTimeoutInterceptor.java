@@ -0,0 +1,27 @@
+package com.javacodeex.config;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.util.concurrent.Callable;
+
+// Per-request async timeout. A handler that returns a StreamingResponseBody (or a
+// Callable) and needs longer than spring.mvc.async.request-timeout sets
+// TIMEOUT_ATTRIBUTE (milliseconds) on the request; it is applied here, just
+// before the async request starts.
+@Component
+public class AsyncTimeoutInterceptor implements CallableProcessingInterceptor {
+
+    public static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutInterceptor.class.getName() + ".timeout";
+
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        Object timeout = request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (timeout instanceof Long millis && request instanceof AsyncWebRequest asyncRequest) {
+            asyncRequest.setTimeout(millis);
+        }
+    }
+}
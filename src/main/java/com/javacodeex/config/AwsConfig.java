@@ -3,9 +3,11 @@ package com.javacodeex.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 
@@ -21,11 +23,21 @@ public class AwsConfig
     @Value("${aws.s3.region}")
     private String region;
 
+    // Optional endpoint override for a local S3 stand-in (MinIO, LocalStack)
+    @Value("${aws.s3.endpoint:}")
+    private String endpoint;
+
+    // Lazy: the client (and its HTTP connection pool) is only built when first used
     @Bean
+    @Lazy
     public AmazonS3 s3() {
-        return AmazonS3ClientBuilder.standard()
-                .withRegion(region)
-                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(awsAccessKey, awsSecretKey)))
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(awsAccessKey, awsSecretKey)));
+        if (endpoint.isEmpty()) {
+            return builder.withRegion(region).build();
+        }
+        return builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region))
+                .withPathStyleAccessEnabled(true)
                 .build();
     }
 
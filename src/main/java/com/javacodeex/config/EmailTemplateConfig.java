@@ -0,0 +1,92 @@
+package com.javacodeex.config;
+
+import com.javacodeex.service.EmailTemplateOptimizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.cache.AlwaysValidCacheEntryValidity;
+import org.thymeleaf.cache.ICacheEntryValidity;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.AbstractTemplateResolver;
+import org.thymeleaf.templateresolver.ITemplateResolver;
+import org.thymeleaf.templateresource.ITemplateResource;
+import org.thymeleaf.templateresource.StringTemplateResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Email templates are run through EmailTemplateOptimizer once at startup (CSS
+// inlined, whitespace and comments stripped) and served from memory by a
+// resolver that Thymeleaf asks before the default classpath one. Sends then
+// render the optimized markup with no per-message CSS work. Templates that fail
+// to optimize fall through to the default resolver unchanged.
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "mail.templates.optimize", havingValue = "true", matchIfMissing = true)
+public class EmailTemplateConfig {
+
+    @Bean
+    public ITemplateResolver optimizedTemplateResolver(
+            @Value("${spring.thymeleaf.prefix:classpath:/templates/}") String prefix,
+            @Value("${spring.thymeleaf.suffix:.html}") String suffix) throws IOException {
+        Map<String, String> templates = new HashMap<>();
+        long originalBytes = 0;
+        long optimizedBytes = 0;
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(prefix + "*" + suffix)) {
+            String filename = resource.getFilename();
+            if (filename == null) {
+                continue;
+            }
+            String name = filename.substring(0, filename.length() - suffix.length());
+            String original = resource.getContentAsString(StandardCharsets.UTF_8);
+            try {
+                String optimized = EmailTemplateOptimizer.optimize(original);
+                templates.put(name, optimized);
+                originalBytes += original.length();
+                optimizedBytes += optimized.length();
+            } catch (RuntimeException e) {
+                log.warn("Failed to optimize email template {}: {}", name, e.getMessage());
+            }
+        }
+        log.info("Optimized {} email templates: {} -> {} characters", templates.size(), originalBytes, optimizedBytes);
+        return new OptimizedTemplateResolver(templates);
+    }
+
+    private static class OptimizedTemplateResolver extends AbstractTemplateResolver {
+
+        private final Map<String, String> templates;
+
+        OptimizedTemplateResolver(Map<String, String> templates) {
+            this.templates = templates;
+            setName("optimized-email-templates");
+            // Ahead of Spring Boot's default resolver, which has no order
+            setOrder(0);
+            setResolvablePatterns(templates.keySet());
+        }
+
+        @Override
+        protected ITemplateResource computeTemplateResource(IEngineConfiguration configuration, String ownerTemplate,
+                                                            String template, Map<String, Object> templateResolutionAttributes) {
+            return new StringTemplateResource(templates.get(template));
+        }
+
+        @Override
+        protected TemplateMode computeTemplateMode(IEngineConfiguration configuration, String ownerTemplate,
+                                                   String template, Map<String, Object> templateResolutionAttributes) {
+            return TemplateMode.HTML;
+        }
+
+        @Override
+        protected ICacheEntryValidity computeValidity(IEngineConfiguration configuration, String ownerTemplate,
+                                                      String template, Map<String, Object> templateResolutionAttributes) {
+            return AlwaysValidCacheEntryValidity.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.javacodeex.config;
+
+import com.javacodeex.service.ScheduledEmailService;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// The faststart profile turns on spring.main.lazy-initialization so a new
+// instance only builds what its first requests touch. Beans listed here still
+// start eagerly because they do work nobody asks for: the reminder service has
+// to replay its journal and deliver due reminders after a restart.
+@Configuration
+public class FastStartConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerBackgroundServices() {
+        return LazyInitializationExcludeFilter.forBeanTypes(ScheduledEmailService.class);
+    }
+}
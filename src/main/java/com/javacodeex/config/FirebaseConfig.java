@@ -1,5 +1,7 @@
 package com.javacodeex.config;
 
+import com.google.api.gax.core.CredentialsProvider;
+import com.google.auth.Credentials;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.FirestoreOptions;
@@ -9,6 +11,7 @@ import com.google.firebase.FirebaseOptions;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.Resource;
 
 import java.io.IOException;
@@ -24,14 +27,38 @@ public class FirebaseConfig {
     @Value("${firebase.project.id}")
     private String projectId;
 
+    // The service account is parsed once, on first use, and shared by FirebaseApp,
+    // Firestore and the spring-cloud-gcp clients (this replaces their default
+    // CredentialsProvider, which would read the file again)
     @Bean
-    public FirebaseApp firebaseApp() throws IOException {
-        // Verify credentials are loaded properly
-        InputStream serviceAccountStream = serviceAccount.getInputStream();
-        GoogleCredentials credentials = GoogleCredentials.fromStream(serviceAccountStream);
-        
+    public CredentialsProvider googleCredentials() {
+        return new CredentialsProvider() {
+            private volatile GoogleCredentials credentials;
+
+            @Override
+            public Credentials getCredentials() throws IOException {
+                GoogleCredentials loaded = credentials;
+                if (loaded == null) {
+                    synchronized (this) {
+                        loaded = credentials;
+                        if (loaded == null) {
+                            try (InputStream serviceAccountStream = serviceAccount.getInputStream()) {
+                                loaded = GoogleCredentials.fromStream(serviceAccountStream);
+                            }
+                            credentials = loaded;
+                        }
+                    }
+                }
+                return loaded;
+            }
+        };
+    }
+
+    @Bean
+    @Lazy
+    public FirebaseApp firebaseApp(CredentialsProvider googleCredentials) throws IOException {
         FirebaseOptions options = FirebaseOptions.builder()
-            .setCredentials(credentials)
+            .setCredentials((GoogleCredentials) googleCredentials.getCredentials())
             .setProjectId(projectId)  // Explicitly set project ID
             .build();
 
@@ -42,12 +69,13 @@ public class FirebaseConfig {
     }
 
     @Bean
-    public Firestore firestore() throws IOException {
+    @Lazy
+    public Firestore firestore(CredentialsProvider googleCredentials) throws IOException {
         // Initialize with explicit project ID
         FirestoreOptions options = FirestoreOptions.newBuilder()
-            .setCredentials(GoogleCredentials.fromStream(serviceAccount.getInputStream()))
+            .setCredentials(googleCredentials.getCredentials())
             .setProjectId(projectId)
             .build();
         return options.getService();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,201 @@
+package com.javacodeex.config;
+
+import com.javacodeex.service.IdempotencyCache;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+// Idempotency-Key support for the email endpoints. The first request with a key
+// runs normally and, if it succeeds, its status and body are kept in the
+// IdempotencyCache; a retry with the same key (and method and path) gets that
+// response replayed without sending again. A retry that arrives while the first
+// request is still running waits for it. Failed requests are not remembered.
+// The query string and body are read up front and hashed; reusing a key with
+// different parameters or a different body is answered with 422 rather than
+// replaying a response meant for another request.
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Autowired
+    private IdempotencyCache cache;
+
+    @Value("${mail.idempotency.paths:/send-*,/schedule-task-reminder,/scheduled-emails/*}")
+    private List<String> paths;
+
+    @Value("${mail.idempotency.wait-timeout:30000}")
+    private long waitTimeoutMillis;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String key = request.getHeader(HEADER);
+        if (key == null || key.isBlank()) {
+            return true;
+        }
+        String path = request.getServletPath();
+        for (String pattern : paths) {
+            if (pathMatcher.match(pattern, path)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getMethod() + " " + request.getServletPath() + " " + request.getHeader(HEADER);
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        String requestHash = cachedRequest.sha256();
+        while (true) {
+            IdempotencyCache.Claim claim = cache.claim(key, requestHash);
+            if (!claim.matches(requestHash)) {
+                response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                        "This Idempotency-Key was already used with a different request");
+                return;
+            }
+            if (claim.isOwner()) {
+                execute(key, claim, cachedRequest, response, chain);
+                return;
+            }
+            IdempotencyCache.StoredResponse stored;
+            try {
+                stored = claim.await(waitTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+                return;
+            } catch (TimeoutException e) {
+                response.sendError(HttpStatus.CONFLICT.value(), "A request with this Idempotency-Key is still in progress");
+                return;
+            }
+            if (stored != null) {
+                replay(stored, response);
+                return;
+            }
+            // The original request failed; run this one instead
+        }
+    }
+
+    private void execute(String key, IdempotencyCache.Claim claim, HttpServletRequest request,
+                         HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            chain.doFilter(request, wrapper);
+            int status = wrapper.getStatus();
+            if (status >= 200 && status < 300) {
+                cache.complete(key, claim, new IdempotencyCache.StoredResponse(status, wrapper.getContentType(),
+                        wrapper.getContentAsByteArray()));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                cache.abandon(key, claim);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void replay(IdempotencyCache.StoredResponse stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    // The request with its body read into memory, so it can be hashed and still be read by the controller
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        // Query parameters (sorted, so their order doesn't matter) and then the body
+        String sha256() {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                String query = getQueryString();
+                if (query != null) {
+                    String[] parameters = query.split("&");
+                    Arrays.sort(parameters);
+                    digest.update(String.join("&", parameters).getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) '\n');
+                return HexFormat.of().formatHex(digest.digest(body));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), encoding));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.javacodeex.config;
+
+import com.javacodeex.service.RoutingMailSender;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// With mail.routing.enabled=true the single spring.mail.* sender is replaced by
+// a RoutingMailSender over the providers listed under mail.routing.providers.
+@Configuration
+@ConditionalOnProperty(name = "mail.routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(MailRoutingProperties.class)
+public class MailRoutingConfig {
+
+    @Bean
+    public RoutingMailSender routingMailSender(MailRoutingProperties properties, MeterRegistry meterRegistry) {
+        List<RoutingMailSender.Provider> providers = new ArrayList<>();
+        for (MailRoutingProperties.Provider provider : properties.getProviders()) {
+            JavaMailSenderImpl sender = new JavaMailSenderImpl();
+            sender.setHost(provider.getHost());
+            sender.setPort(provider.getPort());
+            sender.setUsername(provider.getUsername());
+            sender.setPassword(provider.getPassword());
+            sender.setProtocol(provider.getProtocol());
+            sender.setDefaultEncoding("UTF-8");
+            Properties javaMailProperties = new Properties();
+            javaMailProperties.putAll(provider.getProperties());
+            sender.setJavaMailProperties(javaMailProperties);
+            providers.add(new RoutingMailSender.Provider(provider.getName(), provider.getWeight(), sender));
+        }
+        return new RoutingMailSender(providers, properties.getMaxAttempts(), properties.getErrorRateThreshold(),
+                properties.getMinRequests(), properties.getErrorWindow(), properties.getEjectionTime(), meterRegistry);
+    }
+}
@@ -0,0 +1,66 @@
+package com.javacodeex.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Named SMTP providers for RoutingMailSender (mail.routing.providers[n].*)
+@ConfigurationProperties(prefix = "mail.routing")
+public class MailRoutingProperties {
+
+    private boolean enabled;
+    private int maxAttempts = 3;
+    private double errorRateThreshold = 0.5;
+    private int minRequests = 20;
+    private long errorWindow = 30000;
+    private long ejectionTime = 30000;
+    private List<Provider> providers = new ArrayList<>();
+
+    // Getters and Setters
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getMaxAttempts() { return maxAttempts; }
+    public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+    public double getErrorRateThreshold() { return errorRateThreshold; }
+    public void setErrorRateThreshold(double errorRateThreshold) { this.errorRateThreshold = errorRateThreshold; }
+    public int getMinRequests() { return minRequests; }
+    public void setMinRequests(int minRequests) { this.minRequests = minRequests; }
+    public long getErrorWindow() { return errorWindow; }
+    public void setErrorWindow(long errorWindow) { this.errorWindow = errorWindow; }
+    public long getEjectionTime() { return ejectionTime; }
+    public void setEjectionTime(long ejectionTime) { this.ejectionTime = ejectionTime; }
+    public List<Provider> getProviders() { return providers; }
+    public void setProviders(List<Provider> providers) { this.providers = providers; }
+
+    public static class Provider {
+        private String name;
+        private int weight = 1;
+        private String host;
+        private int port = 587;
+        private String username;
+        private String password;
+        private String protocol = "smtp";
+        private Map<String, String> properties = new HashMap<>();
+
+        // Getters and Setters
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public int getWeight() { return weight; }
+        public void setWeight(int weight) { this.weight = weight; }
+        public String getHost() { return host; }
+        public void setHost(String host) { this.host = host; }
+        public int getPort() { return port; }
+        public void setPort(int port) { this.port = port; }
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+        public String getProtocol() { return protocol; }
+        public void setProtocol(String protocol) { this.protocol = protocol; }
+        public Map<String, String> getProperties() { return properties; }
+        public void setProperties(Map<String, String> properties) { this.properties = properties; }
+    }
+}
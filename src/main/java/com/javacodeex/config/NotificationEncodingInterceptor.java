@@ -0,0 +1,100 @@
+package com.javacodeex.config;
+
+import com.javacodeex.service.NotificationFanoutService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-subscription content negotiation for notification frames.
+// A client asks for a compact encoding with a "payload-format" header on
+// SUBSCRIBE (json, cbor or cbor-elided); matching MESSAGE frames are then
+// re-encoded on the way out and sent as binary WebSocket frames.
+@Slf4j
+@Component
+public class NotificationEncodingInterceptor implements ChannelInterceptor {
+
+    @Autowired
+    private NotificationFrameCodec frameCodec;
+
+    // sessionId -> subscriptionId -> negotiated format (JSON subscriptions are not tracked)
+    private final Map<String, Map<String, NotificationFrameCodec.Format>> formats = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) {
+            return message;
+        }
+        switch (type) {
+            case SUBSCRIBE:
+                recordFormat(headers, sessionId);
+                return message;
+            case UNSUBSCRIBE:
+                Map<String, NotificationFrameCodec.Format> subscriptions = formats.get(sessionId);
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+                if (subscriptions != null && subscriptionId != null) {
+                    subscriptions.remove(subscriptionId);
+                }
+                return message;
+            case DISCONNECT:
+                formats.remove(sessionId);
+                return message;
+            case MESSAGE:
+                return encode(message, sessionId);
+            default:
+                return message;
+        }
+    }
+
+    private void recordFormat(MessageHeaders headers, String sessionId) {
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        if (destination == null || !destination.startsWith(NotificationFanoutService.DESTINATION_PREFIX)
+                || subscriptionId == null) {
+            return;
+        }
+        NotificationFrameCodec.Format format = NotificationFrameCodec.Format.fromHeader(
+                SimpMessageHeaderAccessor.getFirstNativeHeader(NotificationFrameCodec.FORMAT_HEADER, headers));
+        if (format != NotificationFrameCodec.Format.JSON) {
+            formats.computeIfAbsent(sessionId, key -> new ConcurrentHashMap<>()).put(subscriptionId, format);
+        }
+    }
+
+    private Message<?> encode(Message<?> message, String sessionId) {
+        Map<String, NotificationFrameCodec.Format> subscriptions = formats.get(sessionId);
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        if (subscriptions == null || subscriptionId == null || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+        NotificationFrameCodec.Format format = subscriptions.get(subscriptionId);
+        if (format == null) {
+            return message;
+        }
+        try {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+            byte[] encoded = frameCodec.encode(accessor.getHeader(NotificationFrameCodec.SOURCE_HEADER), json, format);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+            accessor.setNativeHeader(NotificationFrameCodec.FORMAT_HEADER, format.getValue());
+            accessor.removeHeader(NotificationFrameCodec.SOURCE_HEADER);
+            return MessageBuilder.createMessage(encoded, accessor.getMessageHeaders());
+        } catch (IOException | RuntimeException e) {
+            // Fall back to the JSON frame rather than lose the notification
+            log.warn("Failed to encode notification frame as {}: {}", format.getValue(), e.getMessage());
+            return message;
+        }
+    }
+}
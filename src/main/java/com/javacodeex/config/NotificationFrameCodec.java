@@ -0,0 +1,154 @@
+package com.javacodeex.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.google.cloud.Timestamp;
+import com.javacodeex.model.Notification;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Compact encodings for /topic/notifications frames.
+// CBOR carries the same fields as the JSON frame; CBOR_ELIDED drops the email
+// (implied by the topic), uses one-letter keys and flattens the Firestore
+// Timestamp to epoch milliseconds.
+@Component
+public class NotificationFrameCodec {
+
+    // Native STOMP header a client sets on SUBSCRIBE, and that we echo on MESSAGE
+    public static final String FORMAT_HEADER = "payload-format";
+
+    // In-process header carrying the unconverted payload from the fan-out stage
+    public static final String SOURCE_HEADER = "notificationFrameSource";
+
+    public enum Format {
+        JSON("json"), CBOR("cbor"), CBOR_ELIDED("cbor-elided");
+
+        private final String value;
+
+        Format(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public static Format fromHeader(String header) {
+            if (header != null) {
+                for (Format format : values()) {
+                    if (format.value.equalsIgnoreCase(header.trim())) {
+                        return format;
+                    }
+                }
+            }
+            return JSON;
+        }
+    }
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    // Headers for convertAndSend that let subscribers share one encoding per format
+    public MessageHeaders sourceHeaders(Object payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setHeader(SOURCE_HEADER, new Source(payload));
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    // Encode from the in-process source if present, otherwise from the JSON bytes (relay mode)
+    public byte[] encode(Object source, byte[] json, Format format) throws IOException {
+        if (source instanceof Source frameSource) {
+            return frameSource.encoded(format);
+        }
+        return cborMapper.writeValueAsBytes(fromJson(jsonMapper.readTree(json), format == Format.CBOR_ELIDED));
+    }
+
+    public byte[] encode(Object payload, Format format) throws IOException {
+        if (format == Format.JSON) {
+            return jsonMapper.writeValueAsBytes(payload);
+        }
+        boolean elide = format == Format.CBOR_ELIDED;
+        if (payload instanceof List<?> notifications) {
+            List<Map<String, Object>> frames = new ArrayList<>(notifications.size());
+            for (Object notification : notifications) {
+                frames.add(toFrame((Notification) notification, elide));
+            }
+            return cborMapper.writeValueAsBytes(frames);
+        }
+        return cborMapper.writeValueAsBytes(toFrame((Notification) payload, elide));
+    }
+
+    private Map<String, Object> toFrame(Notification notification, boolean elide) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        Timestamp timestamp = notification.getTimestamp();
+        if (elide) {
+            frame.put("i", notification.getId());
+            frame.put("t", notification.getTitle());
+            frame.put("c", notification.getContent());
+            frame.put("r", notification.isRead());
+            frame.put("ts", timestamp != null ? timestamp.getSeconds() * 1000 + timestamp.getNanos() / 1_000_000 : null);
+            return frame;
+        }
+        frame.put("id", notification.getId());
+        frame.put("title", notification.getTitle());
+        frame.put("content", notification.getContent());
+        frame.put("read", notification.isRead());
+        frame.put("timestamp", timestamp != null ? Map.of("seconds", timestamp.getSeconds(), "nanos", timestamp.getNanos()) : null);
+        frame.put("email", notification.getEmail());
+        return frame;
+    }
+
+    private Object fromJson(JsonNode node, boolean elide) {
+        if (node.isArray()) {
+            List<Object> frames = new ArrayList<>(node.size());
+            node.forEach(element -> frames.add(fromJson(element, elide)));
+            return frames;
+        }
+        if (!elide) {
+            return jsonMapper.convertValue(node, Map.class);
+        }
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("i", node.path("id").asText(null));
+        frame.put("t", node.path("title").asText(null));
+        frame.put("c", node.path("content").asText(null));
+        frame.put("r", node.path("read").asBoolean());
+        JsonNode timestamp = node.path("timestamp");
+        frame.put("ts", timestamp.isObject()
+                ? timestamp.path("seconds").asLong() * 1000 + timestamp.path("nanos").asLong() / 1_000_000 : null);
+        return frame;
+    }
+
+    // Unconverted payload plus its lazily computed encodings, shared by every subscriber
+    public class Source {
+
+        private final Object payload;
+        private final Map<Format, byte[]> encodings = new ConcurrentHashMap<>(4);
+
+        Source(Object payload) {
+            this.payload = payload;
+        }
+
+        public Object getPayload() {
+            return payload;
+        }
+
+        byte[] encoded(Format format) throws IOException {
+            byte[] bytes = encodings.get(format);
+            if (bytes == null) {
+                bytes = encode(payload, format);
+                encodings.putIfAbsent(format, bytes);
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.javacodeex.config;
+
+import com.javacodeex.service.SendAdmissionLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// Rejects send requests with 429 and Retry-After while SendAdmissionLimiter is at its limit
+@Component
+public class SendAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED = SendAdmissionInterceptor.class.getName() + ".admitted";
+
+    @Autowired
+    private SendAdmissionLimiter limiter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (limiter.tryAcquire()) {
+            request.setAttribute(ADMITTED, Boolean.TRUE);
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(limiter.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"success\":false,\"message\":\"Email service is busy, retry later\",\"timestamp\":\""
+                + java.time.LocalDateTime.now() + "\"}");
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMITTED) != null) {
+            request.removeAttribute(ADMITTED);
+            limiter.release();
+        }
+    }
+}
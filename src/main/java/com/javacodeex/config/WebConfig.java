@@ -0,0 +1,31 @@
+package com.javacodeex.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private SendAdmissionInterceptor sendAdmissionInterceptor;
+
+    @Autowired
+    private AsyncTimeoutInterceptor asyncTimeoutInterceptor;
+
+    @Value("${mail.admission.paths:/send-*}")
+    private String[] admissionPaths;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(sendAdmissionInterceptor).addPathPatterns(admissionPaths);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(asyncTimeoutInterceptor);
+    }
+}
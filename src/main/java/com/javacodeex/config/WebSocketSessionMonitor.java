@@ -0,0 +1,275 @@
+package com.javacodeex.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-connection memory accounting for STOMP sessions.
+// Bytes handed to the client outbound channel are charged to the session and
+// released once the STOMP handler has passed that message to the socket, so the
+// difference is what the session is holding in the outbound queue. Charges are
+// kept per message instance and released by that same instance, whichever
+// outbound thread handles it, so charges and releases always balance. Frames
+// waiting on the socket itself are bounded by Spring's send buffer and send time
+// limits. In connection-scaling mode each session gets a share of a fixed total
+// budget and sessions that exceed it, or stall on a single write, are evicted.
+@Slf4j
+@Component
+public class WebSocketSessionMonitor implements ExecutorChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${websocket.scaling.enabled:false}")
+    private boolean scalingEnabled;
+
+    @Value("${websocket.scaling.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${websocket.scaling.total-buffer-budget:268435456}")
+    private long totalBufferBudget;
+
+    @Value("${websocket.scaling.min-session-buffer:16384}")
+    private int minSessionBuffer;
+
+    @Value("${websocket.scaling.max-session-buffer:524288}")
+    private int maxSessionBuffer;
+
+    @Value("${websocket.scaling.slow-consumer-timeout:5000}")
+    private long slowConsumerTimeoutMillis;
+
+    private final Map<String, SessionStats> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    private Counter bufferEvictions;
+    private Counter slowConsumerEvictions;
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("websocket.sessions.active", sessions, Map::size)
+                .description("Open STOMP sessions")
+                .register(meterRegistry);
+        Gauge.builder("websocket.sessions.buffered.bytes", bufferedBytes, AtomicLong::get)
+                .description("Bytes queued for delivery across all sessions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("websocket.session.buffer.limit", this, WebSocketSessionMonitor::getSessionBufferLimit)
+                .description("Current per-session send buffer limit")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("websocket.session.buffered.max.bytes", this, WebSocketSessionMonitor::getMaxSessionBuffered)
+                .description("Largest send buffer held by a single session")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        bufferEvictions = Counter.builder("websocket.sessions.evicted").tag("reason", "buffer")
+                .register(meterRegistry);
+        slowConsumerEvictions = Counter.builder("websocket.sessions.evicted").tag("reason", "slow-consumer")
+                .register(meterRegistry);
+
+        if (scalingEnabled) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "websocket-session-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    public boolean isScalingEnabled() {
+        return scalingEnabled;
+    }
+
+    public int getMessageSizeLimit() {
+        return messageSizeLimit;
+    }
+
+    public int getMaxSessionBuffer() {
+        return maxSessionBuffer;
+    }
+
+    public int getSlowConsumerTimeoutMillis() {
+        return (int) slowConsumerTimeoutMillis;
+    }
+
+    public int getActiveSessionCount() {
+        return sessions.size();
+    }
+
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    // Each session's share of the total budget, clamped to [min, max]
+    public long getSessionBufferLimit() {
+        long share = totalBufferBudget / Math.max(1, sessions.size());
+        return Math.max(minSessionBuffer, Math.min(maxSessionBuffer, share));
+    }
+
+    public long getMaxSessionBuffered() {
+        long max = 0;
+        for (SessionStats stats : sessions.values()) {
+            max = Math.max(max, stats.buffered.get());
+        }
+        return max;
+    }
+
+    // Charge outbound frames to their session before they reach the send buffer
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionStats stats = sessionId != null ? sessions.get(sessionId) : null;
+        if (stats == null) {
+            return message;
+        }
+        if (stats.evicted.get()) {
+            return null;
+        }
+        long size = message.getPayload() instanceof byte[] bytes ? bytes.length : 0;
+        if (scalingEnabled && stats.buffered.get() + size > getSessionBufferLimit()) {
+            // Dropped, so never charged
+            evict(stats, bufferEvictions);
+            return null;
+        }
+        stats.charges.merge(message, size, Long::sum);
+        stats.buffered.addAndGet(size);
+        bufferedBytes.addAndGet(size);
+        return message;
+    }
+
+    // Release once the message has been handed to the session
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        release(message);
+    }
+
+    // Release charges for messages the channel never dispatched
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (!sent) {
+            release(message);
+        }
+    }
+
+    private void release(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionStats stats = sessionId != null ? sessions.get(sessionId) : null;
+        if (stats == null) {
+            return;
+        }
+        Long charged = stats.charges.remove(message);
+        if (charged != null) {
+            stats.buffered.addAndGet(-charged);
+            bufferedBytes.addAndGet(-charged);
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionStats stats = new SessionStats(session);
+                sessions.put(session.getId(), stats);
+                super.afterConnectionEstablished(stats);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SessionStats stats = sessions.remove(session.getId());
+                if (stats != null) {
+                    stats.charges.clear();
+                    bufferedBytes.addAndGet(-stats.buffered.getAndSet(0));
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    // Evict sessions stuck on a single write or still over their share after it shrank
+    void sweep() {
+        long now = System.nanoTime();
+        long limit = getSessionBufferLimit();
+        for (SessionStats stats : sessions.values()) {
+            long writeStarted = stats.writeStartedNanos;
+            if (writeStarted != 0 && now - writeStarted > TimeUnit.MILLISECONDS.toNanos(slowConsumerTimeoutMillis)) {
+                evict(stats, slowConsumerEvictions);
+            } else if (stats.buffered.get() > limit) {
+                evict(stats, bufferEvictions);
+            }
+        }
+    }
+
+    private void evict(SessionStats stats, Counter reason) {
+        if (!stats.evicted.compareAndSet(false, true)) {
+            return;
+        }
+        reason.increment();
+        try {
+            stats.getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.warn("Failed to close slow WebSocket session {}: {}", stats.getId(), e.getMessage());
+        }
+    }
+
+    // Session seen by the STOMP handler; times each socket write for the sweep
+    private class SessionStats extends WebSocketSessionDecorator {
+
+        private final AtomicLong buffered = new AtomicLong();
+        // Charged size of each message accepted by preSend and not yet handled, keyed by instance
+        private final Map<Message<?>, Long> charges = Collections.synchronizedMap(new IdentityHashMap<>());
+        private volatile long writeStartedNanos;
+        private final AtomicBoolean evicted = new AtomicBoolean();
+
+        SessionStats(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            writeStartedNanos = System.nanoTime();
+            try {
+                super.sendMessage(message);
+            } finally {
+                writeStartedNanos = 0;
+            }
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.javacodeex.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
@@ -11,15 +15,109 @@ import org.springframework.web.socket.config.annotation.WebSocketTransportRegist
 @EnableWebSocketMessageBroker
 public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer {
 
+    // Broker destinations, the same in both modes so switching to the relay loses nothing;
+    // the relayed broker must accept them all (ActiveMQ/Artemis do, RabbitMQ only /topic and /queue)
+    private static final String[] BROKER_DESTINATIONS = { "/topic", "/queue", "/notifications" };
 
+    @Autowired
+    private WebSocketSessionMonitor sessionMonitor;
+
+    @Autowired
+    private NotificationEncodingInterceptor encodingInterceptor;
+
+    // Channel thread pools; the defaults mirror Spring's (2 x cores, unbounded)
+    @Value("${websocket.inbound.core-pool-size:#{T(java.lang.Runtime).getRuntime().availableProcessors() * 2}}")
+    private int inboundCorePoolSize;
+
+    @Value("${websocket.inbound.max-pool-size:2147483647}")
+    private int inboundMaxPoolSize;
+
+    @Value("${websocket.inbound.queue-capacity:2147483647}")
+    private int inboundQueueCapacity;
+
+    @Value("${websocket.outbound.core-pool-size:#{T(java.lang.Runtime).getRuntime().availableProcessors() * 2}}")
+    private int outboundCorePoolSize;
+
+    @Value("${websocket.outbound.max-pool-size:2147483647}")
+    private int outboundMaxPoolSize;
+
+    @Value("${websocket.outbound.queue-capacity:2147483647}")
+    private int outboundQueueCapacity;
+
+    // 0 keeps the broker channel synchronous on the publishing (fan-out) thread
+    @Value("${websocket.broker.core-pool-size:0}")
+    private int brokerCorePoolSize;
+
+    @Value("${websocket.broker.max-pool-size:2147483647}")
+    private int brokerMaxPoolSize;
+
+    @Value("${websocket.broker.queue-capacity:2147483647}")
+    private int brokerQueueCapacity;
+
+    // "simple" keeps the in-process broker; "relay" forwards the broker destinations
+    // to an external STOMP broker so every node sees every notification
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    // No defaults: relay mode refuses to start without credentials
+    @Value("${websocket.broker.relay.client-login:}")
+    private String relayClientLogin;
+
+    @Value("${websocket.broker.relay.client-passcode:}")
+    private String relayClientPasscode;
+
+    @Value("${websocket.broker.relay.system-login:}")
+    private String relaySystemLogin;
+
+    @Value("${websocket.broker.relay.system-passcode:}")
+    private String relaySystemPasscode;
+
+    @Value("${websocket.broker.relay.heartbeat-interval:10000}")
+    private long relayHeartbeatInterval;
 
     @Override
     public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(sessionMonitor);
+        if (sessionMonitor.isScalingEnabled()) {
+            // Connection-scaling mode: small inbound frames, adaptive per-session
+            // buffers enforced by the monitor, with Spring's limit as the hard ceiling
+            registration.setMessageSizeLimit(sessionMonitor.getMessageSizeLimit());
+            registration.setSendBufferSizeLimit(sessionMonitor.getMaxSessionBuffer());
+            registration.setSendTimeLimit(sessionMonitor.getSlowConsumerTimeoutMillis());
+            return;
+        }
         registration.setMessageSizeLimit(10 * 1024 * 1024); // 10MB
         registration.setSendBufferSizeLimit(10 * 1024 * 1024); // 10MB
         registration.setSendTimeLimit(20000); // 20 seconds
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+        registration.interceptors(encodingInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+        // Re-encode first so the monitor charges sessions for the bytes actually sent
+        registration.interceptors(encodingInterceptor, sessionMonitor);
+    }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -30,7 +128,35 @@ public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.setApplicationDestinationPrefixes("/app")
-                .enableSimpleBroker("/topic", "/queue", "/notifications");
+        if (brokerCorePoolSize > 0) {
+            registry.configureBrokerChannel().taskExecutor()
+                    .corePoolSize(brokerCorePoolSize)
+                    .maxPoolSize(brokerMaxPoolSize)
+                    .queueCapacity(brokerQueueCapacity);
+        }
+        registry.setApplicationDestinationPrefixes("/app");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            if (relayClientLogin.isBlank() || relayClientPasscode.isBlank()
+                    || relaySystemLogin.isBlank() || relaySystemPasscode.isBlank()) {
+                throw new IllegalStateException("websocket.broker.mode=relay requires websocket.broker.relay.client-login, "
+                        + "client-passcode, system-login and system-passcode");
+            }
+            // Each subscription lives on exactly one node's relay session, so a
+            // publish travels node -> broker -> subscriber node once, never twice
+            StompBrokerRelayRegistration relay = registry.enableStompBrokerRelay(BROKER_DESTINATIONS)
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode)
+                    .setSystemHeartbeatSendInterval(relayHeartbeatInterval)
+                    .setSystemHeartbeatReceiveInterval(relayHeartbeatInterval);
+            if (!relayVirtualHost.isEmpty()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            return;
+        }
+        registry.enableSimpleBroker(BROKER_DESTINATIONS);
     }
 }
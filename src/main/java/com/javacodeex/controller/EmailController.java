@@ -1,12 +1,18 @@
 package com.javacodeex.controller;
 
 import com.javacodeex.service.EmailService;
+import com.javacodeex.service.MailMergeService;
+import com.javacodeex.service.NotificationDigestService;
+import com.javacodeex.service.ScheduledEmailService;
 import jakarta.mail.MessagingException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +24,15 @@ public class EmailController {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private MailMergeService mailMergeService;
+
+    @Autowired
+    private ScheduledEmailService scheduledEmailService;
+
+    @Autowired
+    private NotificationDigestService notificationDigestService;
+
     // GET endpoint for simple email sending (existing)
     @GetMapping("/send-email")
     public ResponseEntity<String> sendEmail(
@@ -40,7 +55,7 @@ public class EmailController {
     public ResponseEntity<Map<String, Object>> sendEmailPost(@RequestBody EmailRequest request) {
         try {
             log.info("Sending email to: {}, subject: {}", request.getTo(), request.getSubject());
-            emailService.sendHtmlEmail(request.getTo(), request.getSubject(), request.getMessage());
+            emailService.sendHtmlEmail(request.getTo(), request.getSubject(), request.getMessage(), request.getAttachments());
             
             Map<String, Object> response = Map.of(
                 "success", true,
@@ -69,7 +84,10 @@ public class EmailController {
             List<String> failedEmails = emailService.sendBulkHtmlEmails(
                 request.getRecipients(), 
                 request.getSubject(), 
-                request.getMessage()
+                request.getMessage(),
+                request.getAttachments(),
+                request.getOrganizationName(),
+                request.getEnvelopeBatching()
             );
             
             Map<String, Object> response = Map.of(
@@ -91,12 +109,46 @@ public class EmailController {
         }
     }
 
+    // POST endpoint for personalized bulk email; {{name}} placeholders are filled per recipient
+    @PostMapping("/send-bulk-merge")
+    public ResponseEntity<Map<String, Object>> sendBulkMerge(@RequestBody MailMergeRequest request) {
+        try {
+            log.info("Sending mail merge to {} recipients, subject: {}",
+                request.getRecipients().size(), request.getSubject());
+
+            List<String> failedEmails = mailMergeService.sendMerge(
+                request.getSubject(),
+                request.getMessage(),
+                request.getRecipients(),
+                request.getAttachments(),
+                request.getOrganizationName()
+            );
+
+            Map<String, Object> response = Map.of(
+                "success", true,
+                "message", "Mail merge sent successfully",
+                "totalRecipients", request.getRecipients().size(),
+                "failedEmails", failedEmails,
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error sending mail merge: {}", e.getMessage());
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "Failed to send mail merge: " + e.getMessage(),
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     // POST endpoint for notification emails
     @PostMapping("/send-notification")
     public ResponseEntity<Map<String, Object>> sendNotificationEmail(@RequestBody NotificationEmailRequest request) {
         try {
             log.info("Sending notification email to: {}, type: {}", request.getTo(), request.getType());
-            emailService.sendNotificationEmail(request.getTo(), request.getType(), request.getData());
+            notificationDigestService.sendNotificationEmail(request.getTo(), request.getType(), request.getData());
             
             Map<String, Object> response = Map.of(
                 "success", true,
@@ -150,6 +202,7 @@ public class EmailController {
         try {
             log.info("Sending individual application email to: {}", request.getOrganizationEmail());
             EmailService.IndividualApplicationRequest serviceRequest = new EmailService.IndividualApplicationRequest();
+            serviceRequest.setOrganizationName(request.getOrganizationName());
             serviceRequest.setDateOfBirth(request.getDateOfBirth());
             serviceRequest.setEmail(request.getEmail());
             serviceRequest.setPhone(request.getPhone());
@@ -181,6 +234,7 @@ public class EmailController {
         try {
             log.info("Sending team application email to: {}", request.getOrganizationEmail());
             EmailService.TeamApplicationRequest serviceRequest = new EmailService.TeamApplicationRequest();
+            serviceRequest.setOrganizationName(request.getOrganizationName());
             serviceRequest.setTeamName(request.getTeamName());
             serviceRequest.setLeaderEmail(request.getLeaderEmail());
             serviceRequest.setMembers(request.getMembers());
@@ -205,6 +259,80 @@ public class EmailController {
         }
     }
 
+    // POST endpoint for task reminders delivered at a later time (deliverAt is ISO-8601, e.g. 2025-07-01T09:00:00Z)
+    @PostMapping("/schedule-task-reminder")
+    public ResponseEntity<Map<String, Object>> scheduleTaskReminder(@RequestBody ScheduledTaskReminderRequest request) {
+        if (request.getTo() == null || request.getTo().isBlank() || request.getDeliverAt() == null) {
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "to and deliverAt are required",
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.badRequest().body(response);
+        }
+        try {
+            log.info("Scheduling task reminder to: {}, at: {}", request.getTo(), request.getDeliverAt());
+            ScheduledEmailService.ScheduledReminder reminder = new ScheduledEmailService.ScheduledReminder();
+            reminder.setTo(request.getTo());
+            reminder.setTaskTitle(request.getTaskTitle());
+            reminder.setDate(request.getDate());
+            reminder.setTime(request.getTime());
+            reminder.setLocation(request.getLocation());
+            reminder.setDescription(request.getDescription());
+            reminder.setDeliverAt(Instant.parse(request.getDeliverAt()).toEpochMilli());
+
+            String id = scheduledEmailService.scheduleTaskReminder(reminder);
+
+            Map<String, Object> response = Map.of(
+                "success", true,
+                "message", "Task reminder scheduled successfully",
+                "id", id,
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.ok(response);
+        } catch (DateTimeParseException e) {
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "Invalid deliverAt: " + request.getDeliverAt(),
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.badRequest().body(response);
+        } catch (IOException e) {
+            log.error("Error scheduling task reminder: {}", e.getMessage());
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "Failed to schedule task reminder: " + e.getMessage(),
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    // DELETE endpoint to cancel a scheduled email that has not been sent yet
+    @DeleteMapping("/scheduled-emails/{id}")
+    public ResponseEntity<Map<String, Object>> cancelScheduledEmail(@PathVariable String id) {
+        try {
+            log.info("Cancelling scheduled email: {}", id);
+            if (!scheduledEmailService.cancel(id)) {
+                return ResponseEntity.notFound().build();
+            }
+            Map<String, Object> response = Map.of(
+                "success", true,
+                "message", "Scheduled email cancelled successfully",
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.ok(response);
+        } catch (IOException e) {
+            log.error("Error cancelling scheduled email: {}", e.getMessage());
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "Failed to cancel scheduled email: " + e.getMessage(),
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     // Health check endpoint
     @GetMapping("/email/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
@@ -221,6 +349,7 @@ public class EmailController {
         private String to;
         private String subject;
         private String message;
+        private List<EmailService.AttachmentRef> attachments;
 
         // Getters and Setters
         public String getTo() { return to; }
@@ -229,12 +358,18 @@ public class EmailController {
         public void setSubject(String subject) { this.subject = subject; }
         public String getMessage() { return message; }
         public void setMessage(String message) { this.message = message; }
+        public List<EmailService.AttachmentRef> getAttachments() { return attachments; }
+        public void setAttachments(List<EmailService.AttachmentRef> attachments) { this.attachments = attachments; }
     }
 
     public static class BulkEmailRequest {
         private List<String> recipients;
         private String subject;
         private String message;
+        private List<EmailService.AttachmentRef> attachments;
+        private String organizationName;
+        // Send one Bcc message per chunk of recipients; null uses mail.bulk.envelope-batching
+        private Boolean envelopeBatching;
 
         // Getters and Setters
         public List<String> getRecipients() { return recipients; }
@@ -243,6 +378,60 @@ public class EmailController {
         public void setSubject(String subject) { this.subject = subject; }
         public String getMessage() { return message; }
         public void setMessage(String message) { this.message = message; }
+        public List<EmailService.AttachmentRef> getAttachments() { return attachments; }
+        public void setAttachments(List<EmailService.AttachmentRef> attachments) { this.attachments = attachments; }
+
+        public String getOrganizationName() { return organizationName; }
+        public void setOrganizationName(String organizationName) { this.organizationName = organizationName; }
+        public Boolean getEnvelopeBatching() { return envelopeBatching; }
+        public void setEnvelopeBatching(Boolean envelopeBatching) { this.envelopeBatching = envelopeBatching; }
+    }
+
+    public static class MailMergeRequest {
+        private String subject;
+        private String message;
+        private List<MailMergeService.MergeRecipient> recipients;
+        private List<EmailService.AttachmentRef> attachments;
+        private String organizationName;
+
+        // Getters and Setters
+        public String getSubject() { return subject; }
+        public void setSubject(String subject) { this.subject = subject; }
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+        public List<MailMergeService.MergeRecipient> getRecipients() { return recipients; }
+        public void setRecipients(List<MailMergeService.MergeRecipient> recipients) { this.recipients = recipients; }
+        public List<EmailService.AttachmentRef> getAttachments() { return attachments; }
+        public void setAttachments(List<EmailService.AttachmentRef> attachments) { this.attachments = attachments; }
+
+        public String getOrganizationName() { return organizationName; }
+        public void setOrganizationName(String organizationName) { this.organizationName = organizationName; }
+    }
+
+    public static class ScheduledTaskReminderRequest {
+        private String to;
+        private String taskTitle;
+        private String date;
+        private String time;
+        private String location;
+        private String description;
+        private String deliverAt;
+
+        // Getters and Setters
+        public String getTo() { return to; }
+        public void setTo(String to) { this.to = to; }
+        public String getTaskTitle() { return taskTitle; }
+        public void setTaskTitle(String taskTitle) { this.taskTitle = taskTitle; }
+        public String getDate() { return date; }
+        public void setDate(String date) { this.date = date; }
+        public String getTime() { return time; }
+        public void setTime(String time) { this.time = time; }
+        public String getLocation() { return location; }
+        public void setLocation(String location) { this.location = location; }
+        public String getDescription() { return description; }
+        public void setDescription(String description) { this.description = description; }
+        public String getDeliverAt() { return deliverAt; }
+        public void setDeliverAt(String deliverAt) { this.deliverAt = deliverAt; }
     }
 
     public static class NotificationEmailRequest {
@@ -277,6 +466,7 @@ public class EmailController {
     }
 
     public static class IndividualApplicationEmailRequest {
+        private String organizationName;
         private String fullName;
         private String dateOfBirth;
         private String email;
@@ -286,6 +476,8 @@ public class EmailController {
         private String organizationEmail;
 
         // Getters and Setters
+        public String getOrganizationName() { return organizationName; }
+        public void setOrganizationName(String organizationName) { this.organizationName = organizationName; }
         public String getFullName() { return fullName; }
         public void setFullName(String fullName) { this.fullName = fullName; }
         public String getDateOfBirth() { return dateOfBirth; }
@@ -311,6 +503,8 @@ public class EmailController {
         private String applicationDate;
 
         // Getters and Setters
+        public String getOrganizationName() { return organizationName; }
+        public void setOrganizationName(String organizationName) { this.organizationName = organizationName; }
         public String getTeamName() { return teamName; }
         public void setTeamName(String teamName) { this.teamName = teamName; }
         public String getLeaderEmail() { return leaderEmail; }
@@ -0,0 +1,20 @@
+package com.javacodeex.controller;
+
+import com.javacodeex.dto.NotificationRequest;
+import com.javacodeex.service.NotificationLatencyTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+
+@Controller
+public class NotificationAckController {
+
+    @Autowired
+    private NotificationLatencyTracker latencyTracker;
+
+    // Optional client acknowledgement on /app/notifications/ack, closes the end-to-end latency measurement
+    @MessageMapping("/notifications/ack")
+    public void acknowledge(NotificationRequest.DeliveryAck ack) {
+        latencyTracker.acknowledged(ack.getNotificationId(), ack.getTimestamp());
+    }
+}
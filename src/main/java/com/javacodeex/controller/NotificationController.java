@@ -1,16 +1,30 @@
 package com.javacodeex.controller;
 
+import com.javacodeex.config.AsyncTimeoutInterceptor;
 import com.javacodeex.dto.NotificationRequest;
 import com.javacodeex.model.Notification;
+import com.javacodeex.service.NotificationArchiveService;
+import com.javacodeex.service.NotificationExportService;
 import com.javacodeex.service.NotificationService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/notifications")
 @CrossOrigin(origins = "*")
@@ -18,6 +32,16 @@ public class NotificationController {
     
     @Autowired
     private NotificationService notificationService;
+
+    @Autowired
+    private NotificationExportService notificationExportService;
+
+    @Autowired
+    private NotificationArchiveService notificationArchiveService;
+
+    // A full history can take longer than spring.mvc.async.request-timeout allows other requests
+    @Value("${notifications.export.request-timeout:600000}")
+    private long exportTimeoutMillis;
     
     // Create notification for volunteer application
     @PostMapping("/volunteer-application")
@@ -25,10 +49,13 @@ public class NotificationController {
             @RequestBody NotificationRequest.VolunteerApplicationRequest request) {
         return notificationService.createVolunteerApplicationNotification(
                 request.getVolunteerName(), 
+                request.getPostId(), 
                 request.getPostName(), 
                 request.getVolunteerEmail()
         )
         .map(ResponseEntity::ok)
+        // Only a post name was given and several posts share it
+        .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()))
         .defaultIfEmpty(ResponseEntity.badRequest().build());
     }
     
@@ -38,11 +65,14 @@ public class NotificationController {
             @RequestBody NotificationRequest.TeamApplicationRequest request) {
         return notificationService.createTeamApplicationNotification(
                 request.getTeamName(), 
+                request.getPostId(), 
                 request.getPostName(), 
                 request.getTeamMembers(), 
                 request.getTeamEmail()
         )
         .map(ResponseEntity::ok)
+        // Only a post name was given and several posts share it
+        .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()))
         .defaultIfEmpty(ResponseEntity.badRequest().build());
     }
     
@@ -58,6 +88,85 @@ public class NotificationController {
         return notificationService.getUnreadNotificationsByEmail(email);
     }
     
+    // Export the full notification history as NDJSON, streamed page by page;
+    // sent with Content-Encoding: gzip when requested with ?gzip=true or Accept-Encoding: gzip
+    @GetMapping("/{email}/export")
+    public ResponseEntity<StreamingResponseBody> exportNotifications(
+            @PathVariable String email,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletRequest request) {
+        boolean compress = gzip || (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip"));
+        request.setAttribute(AsyncTimeoutInterceptor.TIMEOUT_ATTRIBUTE, exportTimeoutMillis);
+        StreamingResponseBody body = out -> {
+            OutputStream target = compress ? new GZIPOutputStream(out, 8192, true) : out;
+            try {
+                notificationExportService.writeNdjson(email, target);
+            } catch (RuntimeException e) {
+                // Headers are already sent; the client sees a truncated stream (and, gzipped,
+                // one without its trailer, so the failure can't pass for a complete export)
+                log.warn("Notification export for {} failed: {}", email, e.getMessage());
+                throw e;
+            }
+            if (compress) {
+                ((GZIPOutputStream) target).finish();
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"notifications.ndjson\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (compress) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+    
+    // Archived notifications for an email, read back from S3 segments
+    @GetMapping("/{email}/archived")
+    public ResponseEntity<Map<String, Object>> getArchivedNotifications(@PathVariable String email) {
+        try {
+            List<Map<String, Object>> notifications = notificationArchiveService.findArchived(email);
+            Map<String, Object> response = Map.of(
+                "success", true,
+                "notifications", notifications,
+                "count", notifications.size(),
+                "timestamp", LocalDateTime.now().toString()
+            );
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Failed to read archived notifications for {}: {}", email, e.getMessage());
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "Failed to read archived notifications: " + e.getMessage(),
+                "timestamp", LocalDateTime.now().toString()
+            );
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    // Run one archival pass now instead of waiting for the background job
+    @PostMapping("/archive")
+    public ResponseEntity<Map<String, Object>> archiveNotifications() {
+        try {
+            long archived = notificationArchiveService.archive();
+            Map<String, Object> response = Map.of(
+                "success", true,
+                "archived", archived,
+                "timestamp", LocalDateTime.now().toString()
+            );
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Notification archival failed: {}", e.getMessage());
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "Notification archival failed: " + e.getMessage(),
+                "timestamp", LocalDateTime.now().toString()
+            );
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
     // Mark notification as read
     @PutMapping("/{notificationId}/read")
     public Mono<ResponseEntity<Notification>> markAsRead(@PathVariable String notificationId) {
@@ -4,6 +4,7 @@ public class NotificationRequest {
     
     public static class VolunteerApplicationRequest {
         private String volunteerName;
+        private String postId;
         private String postName;
         private String volunteerEmail;
         
@@ -23,6 +24,15 @@ public class NotificationRequest {
             this.volunteerName = volunteerName;
         }
         
+        // Optional; without it the post is looked up by name
+        public String getPostId() {
+            return postId;
+        }
+        
+        public void setPostId(String postId) {
+            this.postId = postId;
+        }
+        
         public String getPostName() {
             return postName;
         }
@@ -42,6 +52,7 @@ public class NotificationRequest {
     
     public static class TeamApplicationRequest {
         private String teamName;
+        private String postId;
         private String postName;
         private String teamMembers;
         private String teamEmail;
@@ -63,6 +74,15 @@ public class NotificationRequest {
             this.teamName = teamName;
         }
         
+        // Optional; without it the post is looked up by name
+        public String getPostId() {
+            return postId;
+        }
+        
+        public void setPostId(String postId) {
+            this.postId = postId;
+        }
+        
         public String getPostName() {
             return postName;
         }
@@ -87,4 +107,28 @@ public class NotificationRequest {
             this.teamEmail = teamEmail;
         }
     }
+    
+    public static class DeliveryAck {
+        private String notificationId;
+        private Long timestamp;
+        
+        public DeliveryAck() {}
+        
+        public String getNotificationId() {
+            return notificationId;
+        }
+        
+        public void setNotificationId(String notificationId) {
+            this.notificationId = notificationId;
+        }
+        
+        // Notification timestamp in epoch millis, as received by the client
+        public Long getTimestamp() {
+            return timestamp;
+        }
+        
+        public void setTimestamp(Long timestamp) {
+            this.timestamp = timestamp;
+        }
+    }
 } 
\ No newline at end of file
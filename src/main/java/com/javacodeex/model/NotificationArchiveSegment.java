@@ -0,0 +1,57 @@
+package com.javacodeex.model;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.annotation.DocumentId;
+import com.google.cloud.spring.data.firestore.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Index entry for one archived segment: a gzip NDJSON object in S3 holding
+// notifications of a single day (partition, UTC), and the emails they belong to
+@Document(collectionName = "notification_archive_segments")
+public class NotificationArchiveSegment {
+    
+    @DocumentId
+    private String id;
+    
+    private String objectKey;
+    private String partition;
+    private List<String> emails = new ArrayList<>();
+    private int count;
+    private long bytes;
+    private Timestamp oldest;
+    private Timestamp newest;
+    private Timestamp archivedAt;
+    
+    // Default constructor
+    public NotificationArchiveSegment() {}
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getObjectKey() { return objectKey; }
+    public void setObjectKey(String objectKey) { this.objectKey = objectKey; }
+    
+    public String getPartition() { return partition; }
+    public void setPartition(String partition) { this.partition = partition; }
+    
+    public List<String> getEmails() { return emails; }
+    public void setEmails(List<String> emails) { this.emails = emails; }
+    
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+    
+    public long getBytes() { return bytes; }
+    public void setBytes(long bytes) { this.bytes = bytes; }
+    
+    public Timestamp getOldest() { return oldest; }
+    public void setOldest(Timestamp oldest) { this.oldest = oldest; }
+    
+    public Timestamp getNewest() { return newest; }
+    public void setNewest(Timestamp newest) { this.newest = newest; }
+    
+    public Timestamp getArchivedAt() { return archivedAt; }
+    public void setArchivedAt(Timestamp archivedAt) { this.archivedAt = archivedAt; }
+}
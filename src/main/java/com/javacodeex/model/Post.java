@@ -0,0 +1,68 @@
+package com.javacodeex.model;
+
+import com.google.cloud.firestore.annotation.DocumentId;
+import com.google.cloud.spring.data.firestore.Document;
+
+// Volunteering post; only the fields needed to route notifications to its organization
+@Document(collectionName = "posts")
+public class Post {
+    
+    @DocumentId
+    private String id;
+    
+    private String name;
+    private String organizationName;
+    private String organizationEmail;
+    
+    // Default constructor
+    public Post() {}
+    
+    public Post(String name, String organizationName, String organizationEmail) {
+        this.name = name;
+        this.organizationName = organizationName;
+        this.organizationEmail = organizationEmail;
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public String getOrganizationName() {
+        return organizationName;
+    }
+    
+    public void setOrganizationName(String organizationName) {
+        this.organizationName = organizationName;
+    }
+    
+    public String getOrganizationEmail() {
+        return organizationEmail;
+    }
+    
+    public void setOrganizationEmail(String organizationEmail) {
+        this.organizationEmail = organizationEmail;
+    }
+    
+    @Override
+    public String toString() {
+        return "Post{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", organizationName='" + organizationName + '\'' +
+                ", organizationEmail='" + organizationEmail + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,13 @@
+package com.javacodeex.repository;
+
+import com.javacodeex.model.NotificationArchiveSegment;
+import com.google.cloud.spring.data.firestore.FirestoreReactiveRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface NotificationArchiveSegmentRepository extends FirestoreReactiveRepository<NotificationArchiveSegment> {
+
+    // Segments holding at least one notification for an email (array-contains on emails)
+    Flux<NotificationArchiveSegment> findByEmailsContaining(String email);
+}
@@ -1,7 +1,9 @@
 package com.javacodeex.repository;
 
 import com.javacodeex.model.Notification;
+import com.google.cloud.Timestamp;
 import com.google.cloud.spring.data.firestore.FirestoreReactiveRepository;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 
@@ -18,4 +20,11 @@ public interface NotificationRepository extends FirestoreReactiveRepository<Noti
     // NOTE: This requires a composite index in Firestore
     // Alternative: Use findByEmail() and sort in application layer
     Flux<Notification> findByEmailOrderByTimestampDesc(String email);
+
+    // One keyset page: notifications at or before a timestamp, newest first (same index as above)
+    Flux<Notification> findByEmailAndTimestampLessThanEqualOrderByTimestampDesc(String email, Timestamp timestamp, Pageable pageable);
+
+    // Archival batch: read notifications older than a cutoff, oldest first
+    // NOTE: This requires a composite index on (read, timestamp)
+    Flux<Notification> findByReadAndTimestampLessThanOrderByTimestampAsc(boolean read, Timestamp cutoff, Pageable pageable);
 } 
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.javacodeex.repository;
+
+import com.javacodeex.model.Post;
+import com.google.cloud.spring.data.firestore.FirestoreReactiveRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface PostRepository extends FirestoreReactiveRepository<Post> {
+
+    // Find posts by display name (used when a request carries no post id)
+    Flux<Post> findByName(String name);
+}
@@ -0,0 +1,435 @@
+package com.javacodeex.service;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeUtility;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Size-bounded local disk cache of S3 attachments.
+// Objects are streamed from S3 straight to disk and stored under the SHA-256
+// of their content, so identical files uploaded under different keys are kept
+// once; small "etag-*" index files map S3 ETags onto those hashes. Files in
+// use by a send are pinned and skipped by LRU eviction. Attachments small
+// enough are also kept base64/MIME-encoded in a bounded memory cache, so each
+// recipient's message copies the encoded bytes instead of re-encoding them.
+// Keys come from API requests, so only keys under attachments.key-prefix are
+// fetched; the rest of the bucket (e.g. notification archives) is off limits.
+@Slf4j
+@Service
+public class AttachmentCache {
+
+    private static final String CONTENT_PREFIX = "sha256-";
+    private static final String ETAG_PREFIX = "etag-";
+
+    // Built on the first download rather than at startup
+    @Lazy
+    @Autowired
+    private AmazonS3 s3;
+
+    @Value("${aws.s3.bucket-name}")
+    private String bucketName;
+
+    @Value("${attachments.key-prefix:attachments/}")
+    private String keyPrefix;
+
+    @Value("${attachments.cache.dir:${java.io.tmpdir}/vsb-attachment-cache}")
+    private String cacheDir;
+
+    @Value("${attachments.cache.max-bytes:1073741824}")
+    private long maxBytes;
+
+    @Value("${attachments.cache.metadata-ttl:60000}")
+    private long metadataTtlMillis;
+
+    @Value("${attachments.encoded-cache.max-bytes:67108864}")
+    private long maxEncodedBytes;
+
+    @Value("${attachments.encoded-cache.max-entry-bytes:8388608}")
+    private long maxEncodedEntryBytes;
+
+    private Path directory;
+    private long totalBytes;
+    private long totalEncodedBytes;
+
+    // content hash -> cached file, in access order for LRU eviction (guarded by this)
+    private final LinkedHashMap<String, CachedFile> files = new LinkedHashMap<>(16, 0.75f, true);
+    // content hash -> base64 MIME body, in access order for LRU eviction (guarded by this)
+    private final LinkedHashMap<String, byte[]> encodedBodies = new LinkedHashMap<>(16, 0.75f, true);
+    // S3 etag -> content hash
+    private final Map<String, String> contentHashes = new ConcurrentHashMap<>();
+    // object key -> last known etag, so repeat sends skip the HEAD request
+    private final Map<String, KnownEtag> etags = new ConcurrentHashMap<>();
+    // etag -> download in progress, so concurrent sends share one download
+    private final Map<String, CompletableFuture<CachedFile>> downloads = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (keyPrefix == null || keyPrefix.isBlank() || !keyPrefix.endsWith("/")) {
+            throw new IllegalStateException("attachments.key-prefix must be a non-empty folder prefix ending in '/'");
+        }
+        directory = Paths.get(cacheDir);
+        Files.createDirectories(directory);
+        List<Path> existing;
+        try (Stream<Path> stream = Files.list(directory)) {
+            existing = stream.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparingLong(this::lastModified))
+                    .toList();
+        }
+        synchronized (this) {
+            for (Path path : existing) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(CONTENT_PREFIX)) {
+                    CachedFile file = new CachedFile(path, name.substring(CONTENT_PREFIX.length()), Files.size(path));
+                    files.put(file.contentHash, file);
+                    totalBytes += file.size;
+                } else if (name.startsWith(ETAG_PREFIX)) {
+                    contentHashes.put(name.substring(ETAG_PREFIX.length()), Files.readString(path).trim());
+                } else {
+                    // Leftover partial download
+                    Files.deleteIfExists(path);
+                }
+            }
+            evict();
+        }
+    }
+
+    // Fetch (or reuse) every referenced object and pin it until the returned leases are closed
+    public Leases acquire(List<EmailService.AttachmentRef> attachments) throws IOException {
+        Leases leases = new Leases();
+        if (attachments == null) {
+            return leases;
+        }
+        for (EmailService.AttachmentRef attachment : attachments) {
+            checkKey(attachment.getKey());
+        }
+        try {
+            for (EmailService.AttachmentRef attachment : attachments) {
+                CachedFile file = fetch(attachment.getKey());
+                leases.add(new Lease(attachment, file));
+            }
+            return leases;
+        } catch (IOException | RuntimeException e) {
+            leases.close();
+            throw e;
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getTotalEncodedBytes() {
+        return totalEncodedBytes;
+    }
+
+    // Reject keys outside the attachments prefix before anything is requested from S3
+    private void checkKey(String key) {
+        if (key == null || !key.startsWith(keyPrefix) || key.length() == keyPrefix.length()) {
+            throw new IllegalArgumentException("Attachment key must be under " + keyPrefix + ": " + key);
+        }
+        for (String segment : key.split("/", -1)) {
+            if (segment.equals("..") || segment.equals(".")) {
+                throw new IllegalArgumentException("Attachment key must not contain relative segments: " + key);
+            }
+        }
+    }
+
+    private CachedFile fetch(String key) throws IOException {
+        String etag = resolveEtag(key);
+        String contentHash = contentHashes.get(etag);
+        CachedFile cached = contentHash != null ? pin(contentHash) : null;
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<CachedFile> download = new CompletableFuture<>();
+        CompletableFuture<CachedFile> existing = downloads.putIfAbsent(etag, download);
+        if (existing != null) {
+            awaitDownload(existing);
+            return fetch(key);
+        }
+        try {
+            CachedFile file = download(key);
+            download.complete(file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            downloads.remove(etag, download);
+        }
+    }
+
+    private String resolveEtag(String key) {
+        KnownEtag known = etags.get(key);
+        long now = System.currentTimeMillis();
+        if (known != null && now - known.fetchedAt < metadataTtlMillis) {
+            return known.etag;
+        }
+        ObjectMetadata metadata = s3.getObjectMetadata(bucketName, key);
+        String etag = fileName(metadata.getETag());
+        etags.put(key, new KnownEtag(etag, now));
+        return etag;
+    }
+
+    // Stream the object to disk, hashing it on the way, and return it already pinned
+    private CachedFile download(String key) throws IOException {
+        try (S3Object object = s3.getObject(bucketName, key);
+             S3ObjectInputStream content = object.getObjectContent()) {
+            String etag = fileName(object.getObjectMetadata().getETag());
+            etags.put(key, new KnownEtag(etag, System.currentTimeMillis()));
+            Path partial = Files.createTempFile(directory, "download", ".part");
+            try {
+                MessageDigest digest = sha256();
+                long size = Files.copy(new DigestInputStream(content, digest), partial, StandardCopyOption.REPLACE_EXISTING);
+                String contentHash = HexFormat.of().formatHex(digest.digest());
+                CachedFile file;
+                synchronized (this) {
+                    file = files.get(contentHash);
+                    if (file == null || !Files.exists(file.path)) {
+                        Path target = directory.resolve(CONTENT_PREFIX + contentHash);
+                        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        file = new CachedFile(target, contentHash, size);
+                        CachedFile previous = files.put(contentHash, file);
+                        totalBytes += size - (previous != null ? previous.size : 0);
+                    }
+                    // Pinned for the caller before eviction can see it
+                    file.pins.incrementAndGet();
+                    evict();
+                }
+                contentHashes.put(etag, contentHash);
+                Files.writeString(directory.resolve(ETAG_PREFIX + etag), contentHash, StandardCharsets.US_ASCII);
+                return file;
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+
+    // Base64 MIME body of the file, encoded once and shared; null if too large to keep in memory
+    private byte[] encodedBody(CachedFile file) throws IOException {
+        synchronized (this) {
+            byte[] encoded = encodedBodies.get(file.contentHash);
+            if (encoded != null) {
+                return encoded;
+            }
+        }
+        // base64 grows content by 4/3, plus CRLF every 76 characters
+        long estimate = (file.size + 2) / 3 * 4 * 78 / 76;
+        if (estimate > maxEncodedEntryBytes) {
+            return null;
+        }
+        synchronized (file) {
+            synchronized (this) {
+                byte[] encoded = encodedBodies.get(file.contentHash);
+                if (encoded != null) {
+                    return encoded;
+                }
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) estimate + 2);
+            try {
+                OutputStream encoder = MimeUtility.encode(buffer, "base64");
+                Files.copy(file.path, encoder);
+                // Flushed, not closed: JavaMail flushes its own encoder too, leaving the last line
+                // without a CRLF, so the cached body matches what it would have written
+                encoder.flush();
+            } catch (MessagingException e) {
+                throw new IOException(e);
+            }
+            byte[] encoded = buffer.toByteArray();
+            synchronized (this) {
+                byte[] previous = encodedBodies.put(file.contentHash, encoded);
+                totalEncodedBytes += encoded.length - (previous != null ? previous.length : 0);
+                Iterator<byte[]> iterator = encodedBodies.values().iterator();
+                while (totalEncodedBytes > maxEncodedBytes && iterator.hasNext()) {
+                    totalEncodedBytes -= iterator.next().length;
+                    iterator.remove();
+                }
+            }
+            return encoded;
+        }
+    }
+
+    private synchronized CachedFile pin(String contentHash) {
+        CachedFile file = files.get(contentHash);
+        if (file == null || !Files.exists(file.path)) {
+            return null;
+        }
+        file.pins.incrementAndGet();
+        return file;
+    }
+
+    private synchronized void release(CachedFile file) {
+        file.pins.decrementAndGet();
+        evict();
+    }
+
+    // Drop least recently used, unpinned files until the cache fits its budget
+    private void evict() {
+        Iterator<Map.Entry<String, CachedFile>> iterator = files.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            CachedFile file = iterator.next().getValue();
+            if (file.pins.get() > 0) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= file.size;
+            byte[] encoded = encodedBodies.remove(file.contentHash);
+            if (encoded != null) {
+                totalEncodedBytes -= encoded.length;
+            }
+            try {
+                Files.deleteIfExists(file.path);
+                for (Map.Entry<String, String> entry : contentHashes.entrySet()) {
+                    if (entry.getValue().equals(file.contentHash) && contentHashes.remove(entry.getKey(), file.contentHash)) {
+                        Files.deleteIfExists(directory.resolve(ETAG_PREFIX + entry.getKey()));
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to evict cached attachment {}: {}", file.path, e.getMessage());
+            }
+        }
+    }
+
+    private void awaitDownload(CompletableFuture<CachedFile> download) throws IOException {
+        try {
+            download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for attachment download", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Attachment download failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String fileName(String etag) {
+        return etag.replaceAll("[^A-Za-z0-9-]", "_");
+    }
+
+    private static class KnownEtag {
+
+        private final String etag;
+        private final long fetchedAt;
+
+        KnownEtag(String etag, long fetchedAt) {
+            this.etag = etag;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private static class CachedFile {
+
+        private final Path path;
+        private final String contentHash;
+        private final long size;
+        private final AtomicInteger pins = new AtomicInteger();
+
+        CachedFile(Path path, String contentHash, long size) {
+            this.path = path;
+            this.contentHash = contentHash;
+            this.size = size;
+        }
+    }
+
+    // A pinned, locally cached attachment
+    public class Lease {
+
+        private final EmailService.AttachmentRef attachment;
+        private final CachedFile file;
+
+        Lease(EmailService.AttachmentRef attachment, CachedFile file) {
+            this.attachment = attachment;
+            this.file = file;
+        }
+
+        public String getFilename() {
+            String filename = attachment.getFilename();
+            if (filename != null && !filename.isBlank()) {
+                return filename;
+            }
+            String key = attachment.getKey();
+            return key.substring(key.lastIndexOf('/') + 1);
+        }
+
+        public Path getPath() {
+            return file.path;
+        }
+
+        public String getContentHash() {
+            return file.contentHash;
+        }
+
+        // Pre-encoded base64 body, or null when the attachment must be streamed from disk
+        public byte[] getEncodedBody() throws IOException {
+            return encodedBody(file);
+        }
+    }
+
+    public class Leases implements AutoCloseable {
+
+        private final List<Lease> leases = new ArrayList<>();
+
+        void add(Lease lease) {
+            leases.add(lease);
+        }
+
+        public List<Lease> getLeases() {
+            return leases;
+        }
+
+        @Override
+        public void close() {
+            for (Lease lease : leases) {
+                release(lease.file);
+            }
+            leases.clear();
+        }
+    }
+}
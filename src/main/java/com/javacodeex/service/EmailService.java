@@ -1,8 +1,21 @@
 package com.javacodeex.service;
 
+import com.amazonaws.SdkClientException;
+import jakarta.mail.Address;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.InternetHeaders;
+import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPMessage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
@@ -10,10 +23,19 @@ import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+@Slf4j
 @Service
 public class EmailService {
 
@@ -23,47 +45,253 @@ public class EmailService {
     @Autowired
     private TemplateEngine templateEngine;
 
+    @Autowired
+    private AttachmentCache attachmentCache;
+
+    @Autowired
+    private MailDispatcher dispatcher;
+
+    // Default for sendBulkHtmlEmails: one message per chunk of BCC recipients instead of one per recipient
+    @Value("${mail.bulk.envelope-batching:false}")
+    private boolean envelopeBatching;
+
+    @Value("${mail.bulk.envelope-batch-size:50}")
+    private int envelopeBatchSize;
+
     public void sendSimpleEmail(String to, String subject, String text) {
         SimpleMailMessage message = new SimpleMailMessage();
         message.setTo(to);
         message.setSubject(subject);
         message.setText(text);
 
-        mailSender.send(message);
+        try {
+            await(dispatcher.submit(MailDispatcher.Lane.TRANSACTIONAL, () -> mailSender.send(message)));
+        } catch (MessagingException e) {
+            throw new MailSendException(e.getMessage(), e);
+        }
     }
 
     public void sendHtmlEmail(String to, String subject, String message) throws MessagingException {
+        sendHtmlEmail(to, subject, message, List.of());
+    }
+
+    // Send HTML email with S3 attachments, streamed from the local attachment cache
+    public void sendHtmlEmail(String to, String subject, String message, List<AttachmentRef> attachments) throws MessagingException {
+        try (AttachmentCache.Leases leases = acquireAttachments(attachments)) {
+            sendHtmlEmail(to, subject, message, leases);
+        }
+    }
+
+    private void sendHtmlEmail(String to, String subject, String message, AttachmentCache.Leases attachments) throws MessagingException {
+        send(createHtmlEmail(to, subject, message, attachments), MailDispatcher.Lane.TRANSACTIONAL, MailDispatcher.DEFAULT_TENANT);
+    }
+
+    // Build an HTML email from emailTemplate without sending it
+    public MimeMessage createHtmlEmail(String to, String subject, String message, AttachmentCache.Leases attachments) throws MessagingException {
+        return buildHtmlEmail(to, subject, message, attachments.getLeases());
+    }
+
+    // Same, for an email without attachments
+    public MimeMessage createHtmlEmail(String to, String subject, String message) throws MessagingException {
+        return buildHtmlEmail(to, subject, message, List.of());
+    }
+
+    private MimeMessage buildHtmlEmail(String to, String subject, String message, List<AttachmentCache.Lease> attachments) throws MessagingException {
         MimeMessage mimeMessage = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-    
+        helper.setTo(to);
+        fillHtmlEmail(helper, subject, message, attachments);
+        return mimeMessage;
+    }
+
+    // One copy of an HTML email for a chunk of recipients, all sent in a single SMTP
+    // transaction (one RCPT TO each, one DATA). Recipients are Bcc, so none of them
+    // sees the others; the visible To is "undisclosed-recipients".
+    private MimeMessage createEnvelopeEmail(List<String> recipients, String subject, String message, AttachmentCache.Leases attachments) throws MessagingException {
+        MimeMessage mimeMessage = new EnvelopeMessage(mailSender.createMimeMessage().getSession());
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+        helper.setBcc(recipients.toArray(new String[0]));
+        mimeMessage.setHeader("To", "undisclosed-recipients:;");
+        fillHtmlEmail(helper, subject, message, attachments.getLeases());
+        return mimeMessage;
+    }
+
+    private void fillHtmlEmail(MimeMessageHelper helper, String subject, String message, List<AttachmentCache.Lease> attachments) throws MessagingException {
         Context context = new Context();
         context.setVariable("subject", subject);
         context.setVariable("message", message);
         String htmlBody = templateEngine.process("emailTemplate", context);
-        helper.setTo(to);
         helper.setSubject(subject);
         helper.setText(htmlBody, true);
-    
-        mailSender.send(mimeMessage);
+        for (AttachmentCache.Lease attachment : attachments) {
+            addAttachment(helper, attachment);
+        }
+    }
+
+    // Queue a prepared message on a dispatcher lane, on behalf of an organization, without waiting for the send
+    public CompletableFuture<Void> sendAsync(MimeMessage mimeMessage, MailDispatcher.Lane lane, String organizationName) {
+        return dispatcher.submit(lane, organizationName, () -> mailSender.send(mimeMessage));
+    }
+
+    private void send(MimeMessage mimeMessage, MailDispatcher.Lane lane, String organizationName) throws MessagingException {
+        await(sendAsync(mimeMessage, lane, organizationName));
+    }
+
+    // Wait for a dispatched send; SMTP failures surface as the MailException the sender threw
+    private void await(CompletableFuture<Void> sent) throws MessagingException {
+        try {
+            sent.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for send", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new MessagingException("Failed to send email: " + e.getCause().getMessage(), (Exception) e.getCause());
+        }
+    }
+
+    private void addAttachment(MimeMessageHelper helper, AttachmentCache.Lease attachment) throws MessagingException {
+        byte[] encoded;
+        try {
+            encoded = attachment.getEncodedBody();
+        } catch (IOException e) {
+            throw new MessagingException("Failed to encode attachment " + attachment.getFilename(), e);
+        }
+        if (encoded == null) {
+            // File-backed part: JavaMail streams and encodes it from disk while writing the message
+            helper.addAttachment(attachment.getFilename(), new FileSystemResource(attachment.getPath()));
+            return;
+        }
+        // Pre-encoded part: shares the cached base64 bytes, which JavaMail writes out as-is
+        MimeBodyPart part = new MimeBodyPart(new InternetHeaders(), encoded);
+        part.setHeader("Content-Type", helper.getFileTypeMap().getContentType(attachment.getFilename()));
+        part.setHeader("Content-Transfer-Encoding", "base64");
+        part.setDisposition(Part.ATTACHMENT);
+        part.setFileName(attachment.getFilename());
+        helper.getRootMimeMultipart().addBodyPart(part);
     }
 
     // Send bulk HTML emails to multiple recipients
     public List<String> sendBulkHtmlEmails(List<String> recipients, String subject, String message) {
+        return sendBulkHtmlEmails(recipients, subject, message, List.of());
+    }
+
+    public List<String> sendBulkHtmlEmails(List<String> recipients, String subject, String message, List<AttachmentRef> attachments) {
+        return sendBulkHtmlEmails(recipients, subject, message, attachments, MailDispatcher.DEFAULT_TENANT);
+    }
+
+    // Send bulk HTML emails with attachments; each attachment is fetched once for the whole run.
+    // Sends go through the bulk lane, so transactional mail is never stuck behind a campaign,
+    // and are queued fairly against other organizations' campaigns.
+    public List<String> sendBulkHtmlEmails(List<String> recipients, String subject, String message, List<AttachmentRef> attachments, String organizationName) {
+        return sendBulkHtmlEmails(recipients, subject, message, attachments, organizationName, null);
+    }
+
+    // envelopeBatching overrides mail.bulk.envelope-batching for this campaign when not null
+    public List<String> sendBulkHtmlEmails(List<String> recipients, String subject, String message, List<AttachmentRef> attachments,
+                                           String organizationName, Boolean envelopeBatching) {
+        if (envelopeBatching != null ? envelopeBatching : this.envelopeBatching) {
+            return sendBatchedHtmlEmails(recipients, subject, message, attachments, organizationName);
+        }
         List<String> failedEmails = new ArrayList<>();
         
-        for (String recipient : recipients) {
-            try {
-                sendHtmlEmail(recipient, subject, message);
-            } catch (MessagingException e) {
-                failedEmails.add(recipient);
-                // Log the error but continue with other emails
-                System.err.println("Failed to send email to " + recipient + ": " + e.getMessage());
+        try (AttachmentCache.Leases leases = acquireAttachments(attachments)) {
+            List<CompletableFuture<Void>> sends = new ArrayList<>(recipients.size());
+            for (String recipient : recipients) {
+                try {
+                    sends.add(sendAsync(createHtmlEmail(recipient, subject, message, leases), MailDispatcher.Lane.BULK, organizationName));
+                } catch (MessagingException e) {
+                    sends.add(CompletableFuture.failedFuture(e));
+                }
+            }
+            for (int i = 0; i < recipients.size(); i++) {
+                try {
+                    await(sends.get(i));
+                } catch (MessagingException | RuntimeException e) {
+                    failedEmails.add(recipients.get(i));
+                    // Log the error but continue with other emails
+                    log.error("Failed to send email to {}: {}", recipients.get(i), e.getMessage());
+                }
             }
+        } catch (MessagingException e) {
+            log.error("Failed to fetch attachments for bulk email: {}", e.getMessage());
+            return new ArrayList<>(recipients);
         }
         
         return failedEmails;
     }
 
+    // Envelope batching for identical content: recipients are split into chunks of
+    // mail.bulk.envelope-batch-size and each chunk gets one message, so the body is
+    // rendered and transferred once per chunk rather than once per recipient.
+    // Rejected recipients don't fail the rest of their chunk (sendpartial); only
+    // the addresses the server did not accept are returned.
+    public List<String> sendBatchedHtmlEmails(List<String> recipients, String subject, String message, List<AttachmentRef> attachments, String organizationName) {
+        List<String> failedEmails = new ArrayList<>();
+        int chunkSize = Math.max(1, envelopeBatchSize);
+
+        try (AttachmentCache.Leases leases = acquireAttachments(attachments)) {
+            List<List<String>> chunks = new ArrayList<>((recipients.size() + chunkSize - 1) / chunkSize);
+            List<CompletableFuture<Void>> sends = new ArrayList<>(chunks.size());
+            for (int from = 0; from < recipients.size(); from += chunkSize) {
+                List<String> chunk = recipients.subList(from, Math.min(recipients.size(), from + chunkSize));
+                chunks.add(chunk);
+                try {
+                    sends.add(sendAsync(createEnvelopeEmail(chunk, subject, message, leases), MailDispatcher.Lane.BULK, organizationName));
+                } catch (MessagingException e) {
+                    sends.add(CompletableFuture.failedFuture(e));
+                }
+            }
+            for (int i = 0; i < chunks.size(); i++) {
+                try {
+                    await(sends.get(i));
+                } catch (MessagingException | RuntimeException e) {
+                    List<String> unsent = unsentRecipients(chunks.get(i), e);
+                    failedEmails.addAll(unsent);
+                    log.error("Failed to send batched email to {} of {} recipients: {}",
+                            unsent.size(), chunks.get(i).size(), e.getMessage());
+                }
+            }
+        } catch (MessagingException e) {
+            log.error("Failed to fetch attachments for bulk email: {}", e.getMessage());
+            return new ArrayList<>(recipients);
+        }
+
+        return failedEmails;
+    }
+
+    // Recipients of a failed envelope send that did not get the message. After a
+    // partial send the SendFailedException lists the addresses the server accepted;
+    // any other failure means nothing was delivered.
+    private List<String> unsentRecipients(List<String> chunk, Exception failure) {
+        SendFailedException sendFailed = null;
+        if (failure instanceof MailSendException mailSendException) {
+            for (Exception cause : mailSendException.getFailedMessages().values()) {
+                if (cause instanceof SendFailedException candidate) {
+                    sendFailed = candidate;
+                }
+            }
+        }
+        if (sendFailed == null || sendFailed.getValidSentAddresses() == null) {
+            return new ArrayList<>(chunk);
+        }
+        Set<String> sent = new HashSet<>();
+        for (Address address : sendFailed.getValidSentAddresses()) {
+            if (address instanceof InternetAddress internetAddress) {
+                sent.add(internetAddress.getAddress().toLowerCase());
+            }
+        }
+        List<String> unsent = new ArrayList<>();
+        for (String recipient : chunk) {
+            if (!sent.contains(recipient.trim().toLowerCase())) {
+                unsent.add(recipient);
+            }
+        }
+        return unsent;
+    }
+
     // Send notification email with dynamic content
     public void sendNotificationEmail(String to, String notificationType, Map<String, Object> data) throws MessagingException {
         String subject = "VSB Notification: " + notificationType;
@@ -72,6 +300,38 @@ public class EmailService {
         sendHtmlEmail(to, subject, message);
     }
 
+    // Queue one summarized email for notifications coalesced by NotificationDigestService
+    public CompletableFuture<Void> queueNotificationDigestEmail(String to, List<DigestGroup> groups, long firstAtMillis, long lastAtMillis) throws MessagingException {
+        int total = 0;
+        List<Map<String, Object>> model = new ArrayList<>(groups.size());
+        for (DigestGroup group : groups) {
+            List<String> messages = new ArrayList<>(group.getData().size());
+            for (Map<String, Object> data : group.getData()) {
+                messages.add(generateNotificationMessage(group.getType(), data));
+            }
+            model.add(Map.of("type", group.getType(), "count", group.getCount(), "messages", messages));
+            total += group.getCount();
+        }
+        String subject = "VSB Notifications: " + total + " new";
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+    
+        Context context = new Context();
+        context.setVariable("subject", "You have " + total + " new notifications");
+        context.setVariable("groups", model);
+        context.setVariable("firstAt", format.format(Instant.ofEpochMilli(firstAtMillis)));
+        context.setVariable("lastAt", format.format(Instant.ofEpochMilli(lastAtMillis)));
+        
+        String htmlBody = templateEngine.process("digestTemplate", context);
+        helper.setTo(to);
+        helper.setSubject(subject);
+        helper.setText(htmlBody, true);
+    
+        return sendAsync(mimeMessage, MailDispatcher.Lane.TRANSACTIONAL, MailDispatcher.DEFAULT_TENANT);
+    }
+
     // Send welcome email to new volunteers
     public void sendWelcomeEmail(WelcomeEmailRequest request) throws MessagingException {
         String subject = "Welcome to Volunteer Skill Bank!";
@@ -90,10 +350,15 @@ public class EmailService {
 
     // Send task reminder email
     public void sendTaskReminderEmail(String to, String taskTitle, String date, String time, String location, String description) throws MessagingException {
+        await(queueTaskReminderEmail(to, taskTitle, date, time, location, description));
+    }
+
+    // Queue a task reminder on the transactional lane without waiting for the send
+    public CompletableFuture<Void> queueTaskReminderEmail(String to, String taskTitle, String date, String time, String location, String description) throws MessagingException {
         String subject = "Task Reminder: " + taskTitle;
         String message = generateTaskReminderMessage(taskTitle, date, time, location, description);
         
-        sendHtmlEmail(to, subject, message);
+        return sendAsync(createHtmlEmail(to, subject, message), MailDispatcher.Lane.TRANSACTIONAL, MailDispatcher.DEFAULT_TENANT);
     }
 
     // Send team update email
@@ -127,7 +392,7 @@ public class EmailService {
         helper.setSubject(subject);
         helper.setText(htmlBody, true);
     
-        mailSender.send(mimeMessage);
+        send(mimeMessage, MailDispatcher.Lane.TRANSACTIONAL, request.getOrganizationName());
     }
 
     // Send team application email
@@ -150,7 +415,16 @@ public class EmailService {
         helper.setSubject(subject);
         helper.setText(htmlBody, true);
     
-        mailSender.send(mimeMessage);
+        send(mimeMessage, MailDispatcher.Lane.TRANSACTIONAL, request.getOrganizationName());
+    }
+
+    // Fetch and pin attachments; close the leases once the messages using them are sent
+    public AttachmentCache.Leases acquireAttachments(List<AttachmentRef> attachments) throws MessagingException {
+        try {
+            return attachmentCache.acquire(attachments);
+        } catch (IOException | SdkClientException | IllegalArgumentException e) {
+            throw new MessagingException("Failed to fetch attachment: " + e.getMessage(), e);
+        }
     }
 
     // Helper methods to generate email content
@@ -169,15 +443,9 @@ public class EmailService {
         }
     }
 
-    private String generateWelcomeMessage(WelcomeEmailRequest request) {
-        StringBuilder skillsList = new StringBuilder();
-        if (request.getSkills() != null && !request.getSkills().isEmpty()) {
-            skillsList.append(String.join(", ", request.getSkills()));
-        } else {
-            skillsList.append("Not specified");
-        }
-
-        return String.format("""
+    // Plain-text bodies in String.format syntax, compiled once below; the
+    // formats stay package-visible so tests and benchmarks can compare against String.format
+    static final String WELCOME_FORMAT = """
             Welcome to Volunteer Skill Bank, %s!
             
             We're excited to have you join our community of volunteers making a difference.
@@ -197,11 +465,57 @@ public class EmailService {
             
             Best regards,
             The VSB Team
-            """, 
+            """;
+
+    static final String TASK_REMINDER_FORMAT = """
+            Task Reminder
+            
+            You have a scheduled task coming up:
+            
+            Task: %s
+            Date: %s
+            Time: %s
+            Location: %s
+            Description: %s
+            
+            Please make sure to arrive on time and bring any necessary equipment.
+            
+            If you need to reschedule or have any questions, please contact the team leader.
+            
+            Best regards,
+            The VSB Team
+            """;
+
+    static final String TEAM_UPDATE_FORMAT = """
+            Team Update: %s
+            
+            %s
+            
+            Team Details:
+            - Project: %s
+            - Meeting Date: %s
+            - Location: %s
+            
+            Please review the update and let us know if you have any questions.
+            
+            Best regards,
+            The VSB Team
+            """;
+
+    private static final MessageTemplate WELCOME_MESSAGE = MessageTemplate.compileFormat(WELCOME_FORMAT);
+    private static final MessageTemplate TASK_REMINDER_MESSAGE = MessageTemplate.compileFormat(TASK_REMINDER_FORMAT);
+    private static final MessageTemplate TEAM_UPDATE_MESSAGE = MessageTemplate.compileFormat(TEAM_UPDATE_FORMAT);
+
+    String generateWelcomeMessage(WelcomeEmailRequest request) {
+        String skills = request.getSkills() != null && !request.getSkills().isEmpty()
+                ? String.join(", ", request.getSkills())
+                : "Not specified";
+
+        return WELCOME_MESSAGE.render(
             request.getFirstName(),
             request.getFirstName(), request.getLastName(),
             request.getEmail(),
-            skillsList.toString()
+            skills
         );
     }
 
@@ -240,47 +554,39 @@ public class EmailService {
         return message.toString();
     }
 
-    private String generateTaskReminderMessage(String taskTitle, String date, String time, String location, String description) {
-        return String.format("""
-            Task Reminder
-            
-            You have a scheduled task coming up:
-            
-            Task: %s
-            Date: %s
-            Time: %s
-            Location: %s
-            Description: %s
-            
-            Please make sure to arrive on time and bring any necessary equipment.
-            
-            If you need to reschedule or have any questions, please contact the team leader.
-            
-            Best regards,
-            The VSB Team
-            """, 
-            taskTitle, date, time, location, description
-        );
+    String generateTaskReminderMessage(String taskTitle, String date, String time, String location, String description) {
+        return TASK_REMINDER_MESSAGE.render(taskTitle, date, time, location, description);
     }
 
-    private String generateTeamUpdateMessage(String teamName, String projectName, String meetingDate, String location, String updateMessage) {
-        return String.format("""
-            Team Update: %s
-            
-            %s
-            
-            Team Details:
-            - Project: %s
-            - Meeting Date: %s
-            - Location: %s
-            
-            Please review the update and let us know if you have any questions.
-            
-            Best regards,
-            The VSB Team
-            """, 
-            teamName, updateMessage, projectName, meetingDate, location
-        );
+    String generateTeamUpdateMessage(String teamName, String projectName, String meetingDate, String location, String updateMessage) {
+        return TEAM_UPDATE_MESSAGE.render(teamName, updateMessage, projectName, meetingDate, location);
+    }
+
+    // Notifications of one type in a digest; data holds the first few, count includes the rest
+    public static class DigestGroup {
+        private String type;
+        private int count;
+        private List<Map<String, Object>> data = new ArrayList<>();
+
+        // Getters and Setters
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        public int getCount() { return count; }
+        public void setCount(int count) { this.count = count; }
+        public List<Map<String, Object>> getData() { return data; }
+        public void setData(List<Map<String, Object>> data) { this.data = data; }
+    }
+
+    // Reference to an attachment stored in the configured S3 bucket
+    public static class AttachmentRef {
+        private String key;
+        private String filename;
+
+        // Getters and Setters
+        public String getKey() { return key; }
+        public void setKey(String key) { this.key = key; }
+        public String getFilename() { return filename; }
+        public void setFilename(String filename) { this.filename = filename; }
     }
 
     // DTO for welcome email request
@@ -357,4 +663,20 @@ public class EmailService {
         public String getApplicationDate() { return applicationDate; }
         public void setApplicationDate(String applicationDate) { this.applicationDate = applicationDate; }
     }
+
+    // Message whose SMTP envelope is its Bcc list. sendpartial lets the server
+    // take the message for the valid recipients when some RCPT TOs are rejected;
+    // the transport then reports which addresses were sent and which were invalid.
+    private static class EnvelopeMessage extends SMTPMessage {
+
+        EnvelopeMessage(Session session) {
+            super(session);
+            setSendPartial(true);
+        }
+
+        @Override
+        public Address[] getAllRecipients() throws MessagingException {
+            return getRecipients(RecipientType.BCC);
+        }
+    }
 }
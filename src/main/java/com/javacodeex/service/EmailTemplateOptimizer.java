@@ -0,0 +1,216 @@
+package com.javacodeex.service;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.QueryParser;
+import org.jsoup.select.Selector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Rewrites an email template once, ahead of rendering: rules from <style> blocks
+// are copied into the style attribute of every element they match (many mail
+// clients drop <style>), comments and indentation whitespace are removed.
+// Thymeleaf attributes pass through untouched, so the result is still a template.
+// Only static markup is matched: a class added by th:class/th:classappend at
+// render time gets no inlined style. Rules that cannot be inlined (@media,
+// pseudo-classes such as :hover) stay behind in a <style> block.
+public final class EmailTemplateOptimizer {
+
+    private static final Pattern CSS_COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern ID_SELECTOR = Pattern.compile("#[\\w-]+");
+    private static final Pattern ATTRIBUTE_SELECTOR = Pattern.compile("\\[[^]]*]");
+    private static final Pattern CLASS_SELECTOR = Pattern.compile("\\.[\\w-]+|\\[[^]]*]|:[\\w-]+");
+    private static final Pattern TYPE_SELECTOR = Pattern.compile("(?:^|[\\s>+~])([a-zA-Z][\\w-]*)");
+
+    private EmailTemplateOptimizer() {
+    }
+
+    public static String optimize(String html) {
+        Document document = Jsoup.parse(html);
+        document.outputSettings().prettyPrint(false).outline(false);
+
+        List<Rule> rules = new ArrayList<>();
+        StringBuilder leftover = new StringBuilder();
+        for (Element style : document.select("style")) {
+            parseStyleSheet(style.data(), rules, leftover);
+            style.remove();
+        }
+        inline(document, rules);
+        if (leftover.length() > 0) {
+            document.head().appendElement("style").appendChild(new DataNode(leftover.toString()));
+        }
+        strip(document);
+        return document.outerHtml();
+    }
+
+    private static void parseStyleSheet(String css, List<Rule> rules, StringBuilder leftover) {
+        css = CSS_COMMENT.matcher(css).replaceAll("");
+        int position = 0;
+        while (position < css.length()) {
+            int open = css.indexOf('{', position);
+            if (open < 0) {
+                break;
+            }
+            String prelude = css.substring(position, open).trim();
+            int close = matchingBrace(css, open);
+            String body = css.substring(open + 1, close).trim();
+            position = close + 1;
+            if (prelude.startsWith("@")) {
+                // Media queries and other at-rules only work from a stylesheet
+                leftover.append(prelude).append('{').append(collapse(body)).append('}');
+                continue;
+            }
+            Map<String, String> declarations = parseDeclarations(body);
+            for (String selector : prelude.split(",")) {
+                selector = collapse(selector.trim());
+                if (selector.isEmpty()) {
+                    continue;
+                }
+                if (!inlinable(selector)) {
+                    leftover.append(selector).append('{').append(collapse(body)).append('}');
+                    continue;
+                }
+                rules.add(new Rule(selector, specificity(selector), rules.size(), declarations));
+            }
+        }
+    }
+
+    // Apply rules in cascade order (specificity, then source order); the element's own style attribute wins
+    private static void inline(Document document, List<Rule> rules) {
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.specificity).thenComparingInt(rule -> rule.order));
+        Map<Element, Map<String, String>> computed = new IdentityHashMap<>();
+        for (Rule rule : rules) {
+            for (Element element : document.body().select(rule.selector)) {
+                computed.computeIfAbsent(element, key -> new LinkedHashMap<>()).putAll(rule.declarations);
+            }
+        }
+        for (Map.Entry<Element, Map<String, String>> entry : computed.entrySet()) {
+            Element element = entry.getKey();
+            Map<String, String> declarations = entry.getValue();
+            declarations.putAll(parseDeclarations(element.attr("style")));
+            StringBuilder style = new StringBuilder();
+            for (Map.Entry<String, String> declaration : declarations.entrySet()) {
+                if (style.length() > 0) {
+                    style.append(';');
+                }
+                style.append(declaration.getKey()).append(':').append(declaration.getValue());
+            }
+            element.attr("style", style.toString());
+        }
+    }
+
+    // Pseudo-classes (a colon outside any [attr] part) depend on state or position the
+    // static markup can't express; anything else jsoup can't parse stays in the stylesheet too
+    private static boolean inlinable(String selector) {
+        if (ATTRIBUTE_SELECTOR.matcher(selector).replaceAll("").contains(":")) {
+            return false;
+        }
+        try {
+            QueryParser.parse(selector);
+            return true;
+        } catch (Selector.SelectorParseException e) {
+            return false;
+        }
+    }
+
+    // Drop comments and whitespace-only text around block elements; collapse the rest to single spaces
+    private static void strip(Node node) {
+        for (Node child : new ArrayList<>(node.childNodes())) {
+            if (child instanceof Comment comment) {
+                if (!comment.getData().startsWith("[if")) {
+                    comment.remove();
+                }
+            } else if (child instanceof TextNode text) {
+                if (node instanceof Element parent && (parent.normalName().equals("pre") || parent.normalName().equals("textarea"))) {
+                    continue;
+                }
+                if (text.isBlank()) {
+                    if (isBlockBoundary(text.previousSibling()) || isBlockBoundary(text.nextSibling())) {
+                        text.remove();
+                    } else {
+                        text.text(" ");
+                    }
+                } else {
+                    text.text(collapse(text.getWholeText()));
+                }
+            } else {
+                strip(child);
+            }
+        }
+    }
+
+    private static boolean isBlockBoundary(Node sibling) {
+        return sibling == null || (sibling instanceof Element element && element.isBlock());
+    }
+
+    private static Map<String, String> parseDeclarations(String body) {
+        Map<String, String> declarations = new LinkedHashMap<>();
+        for (String declaration : body.split(";")) {
+            int colon = declaration.indexOf(':');
+            if (colon > 0) {
+                declarations.put(declaration.substring(0, colon).trim().toLowerCase(),
+                        collapse(declaration.substring(colon + 1).trim()));
+            }
+        }
+        return declarations;
+    }
+
+    // Ids, then classes/attributes/pseudo-classes, then type selectors (a, b, c packed into one int)
+    private static int specificity(String selector) {
+        return count(ID_SELECTOR, selector) * 10_000 + count(CLASS_SELECTOR, selector) * 100
+                + count(TYPE_SELECTOR, selector);
+    }
+
+    private static int count(Pattern pattern, String selector) {
+        Matcher matcher = pattern.matcher(selector);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int matchingBrace(String css, int open) {
+        int depth = 0;
+        for (int i = open; i < css.length(); i++) {
+            if (css.charAt(i) == '{') {
+                depth++;
+            } else if (css.charAt(i) == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return css.length() - 1;
+    }
+
+    private static String collapse(String value) {
+        return WHITESPACE.matcher(value).replaceAll(" ");
+    }
+
+    private static class Rule {
+
+        private final String selector;
+        private final int specificity;
+        private final int order;
+        private final Map<String, String> declarations;
+
+        Rule(String selector, int specificity, int order, Map<String, String> declarations) {
+            this.selector = selector;
+            this.specificity = specificity;
+            this.order = order;
+            this.declarations = declarations;
+        }
+    }
+}
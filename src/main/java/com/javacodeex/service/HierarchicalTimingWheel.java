@@ -0,0 +1,159 @@
+package com.javacodeex.service;
+
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel (Varghese & Lauck, as used by the Linux kernel timers).
+// Level 0 has one bucket per tick; each level above covers wheelSize times the span
+// of the one below. A timeout is placed in the lowest level whose span covers its
+// delay and is moved down a level (cascaded) when the wheel below wraps around.
+// Buckets are intrusive doubly-linked lists, so add and cancel are O(1).
+// Not thread-safe; callers synchronize.
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final Bucket<T>[][] levels;
+    private final long maxDelayTicks;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMillis, int wheelBits, int levelCount, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.bits = wheelBits;
+        this.mask = (1 << wheelBits) - 1;
+        this.levels = new Bucket[levelCount][1 << wheelBits];
+        for (Bucket<T>[] level : levels) {
+            for (int i = 0; i < level.length; i++) {
+                level[i] = new Bucket<>();
+            }
+        }
+        this.maxDelayTicks = bits * levelCount >= 63 ? Long.MAX_VALUE : (1L << (bits * levelCount)) - 1;
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    // Schedule a value; a deadline at or before the current tick is handed to due immediately by the next advance
+    public Timeout<T> add(long deadlineMillis, T value) {
+        Timeout<T> timeout = new Timeout<>(deadlineMillis, value);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.bucket == null) {
+            return false;
+        }
+        timeout.bucket.remove(timeout);
+        size--;
+        return true;
+    }
+
+    // Move the wheel forward to nowMillis, passing every expired value to due in deadline-tick order
+    public void advance(long nowMillis, Consumer<T> due) {
+        long targetTick = nowMillis / tickMillis;
+        expire(levels[0][(int) (currentTick & mask)], due);
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            expire(levels[0][(int) (currentTick & mask)], due);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void place(Timeout<T> timeout) {
+        long deadlineTick = Math.max(timeout.deadlineMillis / tickMillis, currentTick);
+        long delay = Math.min(deadlineTick - currentTick, maxDelayTicks);
+        long tick = currentTick + delay;
+        int level = 0;
+        while (level < levels.length - 1 && delay >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        levels[level][(int) ((tick >>> (bits * level)) & mask)].add(timeout);
+    }
+
+    // When a level wraps, re-place the bucket of the level above that now falls within range
+    private void cascade() {
+        for (int level = 1; level < levels.length; level++) {
+            if ((currentTick & ((1L << (bits * level)) - 1)) != 0) {
+                return;
+            }
+            Bucket<T> bucket = levels[level][(int) ((currentTick >>> (bits * level)) & mask)];
+            Timeout<T> timeout = bucket.head;
+            bucket.head = null;
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                timeout.prev = timeout.next = null;
+                timeout.bucket = null;
+                place(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    private void expire(Bucket<T> bucket, Consumer<T> due) {
+        Timeout<T> timeout = bucket.head;
+        bucket.head = null;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+            size--;
+            due.accept(timeout.value);
+            timeout = next;
+        }
+    }
+
+    public static final class Timeout<T> {
+
+        private final long deadlineMillis;
+        private final T value;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private Bucket<T> bucket;
+
+        Timeout(long deadlineMillis, T value) {
+            this.deadlineMillis = deadlineMillis;
+            this.value = value;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+
+    private static final class Bucket<T> {
+
+        private Timeout<T> head;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
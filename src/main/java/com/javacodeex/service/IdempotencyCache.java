@@ -0,0 +1,307 @@
+package com.javacodeex.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Results of requests sent with an Idempotency-Key. A key maps to a future of
+// the stored response in one ConcurrentHashMap, so claiming and looking up a key
+// is a single lock-free putIfAbsent/get. Expiry is time-bucketed: the TTL is
+// split into buckets, each key is listed in the bucket it was created in, and a
+// background thread drops a whole bucket's keys when the ring comes round,
+// instead of keeping a timestamp per lookup. Each key also records a hash of the
+// request it was first used with, so a reuse with a different body is detectable.
+// Completed responses can optionally be appended to a local file and reloaded at startup.
+@Slf4j
+@Component
+public class IdempotencyCache {
+
+    @Value("${mail.idempotency.ttl:86400000}")
+    private long ttlMillis;
+
+    @Value("${mail.idempotency.buckets:24}")
+    private int bucketCount;
+
+    @Value("${mail.idempotency.persistence-path:}")
+    private String persistencePath;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private AtomicReferenceArray<Queue<String>> ring;
+    private long bucketMillis;
+    private volatile long epoch;
+
+    private final Object fileLock = new Object();
+    private BufferedWriter persistence;
+    private Thread rotator;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        bucketMillis = Math.max(1, ttlMillis / bucketCount);
+        ring = new AtomicReferenceArray<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            ring.set(i, new ConcurrentLinkedQueue<>());
+        }
+        // Epochs are absolute, so entries reloaded from disk keep their age
+        epoch = System.currentTimeMillis() / bucketMillis;
+        if (!persistencePath.isBlank()) {
+            load();
+        }
+        running = true;
+        rotator = new Thread(this::rotate, "idempotency-expiry");
+        rotator.setDaemon(true);
+        rotator.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        running = false;
+        rotator.interrupt();
+        synchronized (fileLock) {
+            if (persistence != null) {
+                persistence.close();
+            }
+        }
+    }
+
+    // Claim a key. The returned entry is either ours to complete (isOwner) or
+    // the one created by the original request, whose result can be awaited.
+    public Claim claim(String key) {
+        return claim(key, null);
+    }
+
+    // requestHash identifies the request (e.g. a body digest); see Claim.matches
+    public Claim claim(String key, String requestHash) {
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            return new Claim(existing, false);
+        }
+        long current = epoch;
+        Entry fresh = new Entry(current, requestHash);
+        existing = entries.putIfAbsent(key, fresh);
+        if (existing != null) {
+            return new Claim(existing, false);
+        }
+        ring.get((int) (current % bucketCount)).add(key);
+        return new Claim(fresh, true);
+    }
+
+    // Store the response of a successful request for replay
+    public void complete(String key, Claim claim, StoredResponse response) {
+        claim.entry.result.complete(response);
+        if (persistence != null) {
+            persist(key, claim.entry, response);
+        }
+    }
+
+    // Forget a key whose request failed, so a retry runs it again; waiters get null and retry too
+    public void abandon(String key, Claim claim) {
+        entries.remove(key, claim.entry);
+        claim.entry.result.complete(null);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void rotate() {
+        while (running) {
+            try {
+                long next = (epoch + 1) * bucketMillis;
+                Thread.sleep(Math.max(1, next - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                return;
+            }
+            long current = System.currentTimeMillis() / bucketMillis;
+            // After a long pause only the last ring's worth of buckets can still hold keys
+            long first = Math.max(epoch - bucketCount + 1, current - 2L * bucketCount + 1);
+            for (long expired = first; expired <= current - bucketCount; expired++) {
+                expire(expired);
+            }
+            epoch = current;
+            if (persistence != null && current % bucketCount == 0) {
+                compact();
+            }
+        }
+    }
+
+    private void expire(long bucketEpoch) {
+        int slot = (int) Math.floorMod(bucketEpoch, (long) bucketCount);
+        Queue<String> keys = ring.getAndSet(slot, new ConcurrentLinkedQueue<>());
+        for (String key : keys) {
+            entries.computeIfPresent(key, (k, entry) -> {
+                if (entry.epoch > bucketEpoch) {
+                    return entry;
+                }
+                if (!entry.result.isDone()) {
+                    // Still running; look again a full TTL later
+                    ring.get(slot).add(k);
+                    return entry;
+                }
+                return null;
+            });
+        }
+    }
+
+    // Each line: key, epoch, status, content type, base64 body, request hash (tab separated)
+    private void load() throws IOException {
+        Path path = Paths.get(persistencePath);
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", -1);
+                    // Records written before request hashes were kept have five fields
+                    if (fields.length != 5 && fields.length != 6) {
+                        continue;
+                    }
+                    try {
+                        long entryEpoch = Long.parseLong(fields[1]);
+                        if (entryEpoch <= epoch - bucketCount) {
+                            continue;
+                        }
+                        String requestHash = fields.length == 6 && !fields[5].isEmpty() ? fields[5] : null;
+                        Entry entry = new Entry(entryEpoch, requestHash);
+                        entry.result.complete(new StoredResponse(Integer.parseInt(fields[2]),
+                                fields[3].isEmpty() ? null : fields[3], Base64.getDecoder().decode(fields[4])));
+                        if (entries.put(fields[0], entry) == null) {
+                            ring.get((int) (entryEpoch % bucketCount)).add(fields[0]);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Skipping unreadable idempotency record: {}", e.getMessage());
+                    }
+                }
+            }
+        } else if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        compact();
+    }
+
+    private void persist(String key, Entry entry, StoredResponse response) {
+        synchronized (fileLock) {
+            try {
+                persistence.write(record(key, entry, response));
+                persistence.newLine();
+                persistence.flush();
+            } catch (IOException e) {
+                log.error("Failed to persist idempotency key: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Rewrite the file with only the completed, unexpired entries
+    private void compact() {
+        Path path = Paths.get(persistencePath);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        synchronized (fileLock) {
+            try {
+                if (persistence != null) {
+                    persistence.close();
+                }
+                try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                        StoredResponse response = entry.getValue().result.getNow(null);
+                        if (response != null) {
+                            writer.write(record(entry.getKey(), entry.getValue(), response));
+                            writer.newLine();
+                        }
+                    }
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                persistence = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.warn("Failed to compact idempotency keys: {}", e.getMessage());
+            }
+        }
+    }
+
+    private String record(String key, Entry entry, StoredResponse response) {
+        // Keys come from a client header; keep the record on one line
+        return key.replaceAll("[\\t\\r\\n]", " ") + "\t" + entry.epoch + "\t" + response.getStatus() + "\t"
+                + (response.getContentType() != null ? response.getContentType() : "") + "\t"
+                + Base64.getEncoder().encodeToString(response.getBody()) + "\t"
+                + (entry.requestHash != null ? entry.requestHash : "");
+    }
+
+    private static class Entry {
+
+        private final long epoch;
+        private final String requestHash;
+        private final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+
+        Entry(long epoch, String requestHash) {
+            this.epoch = epoch;
+            this.requestHash = requestHash;
+        }
+    }
+
+    public static class Claim {
+
+        private final Entry entry;
+        private final boolean owner;
+
+        Claim(Entry entry, boolean owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        public boolean isOwner() {
+            return owner;
+        }
+
+        // Whether the key was first used for the same request; unknown hashes match anything
+        public boolean matches(String requestHash) {
+            return entry.requestHash == null || requestHash == null || entry.requestHash.equals(requestHash);
+        }
+
+        // The original response, or null if the original request failed and was abandoned
+        public StoredResponse await(long timeoutMillis) throws InterruptedException, TimeoutException {
+            try {
+                return entry.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    public static class StoredResponse {
+
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        public StoredResponse(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public int getStatus() { return status; }
+        public String getContentType() { return contentType; }
+        public byte[] getBody() { return body; }
+    }
+}
@@ -0,0 +1,289 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Priority lanes in front of the SMTP sender. Transactional mail (welcome,
+// application, status, reminders) has a few workers of its own that never touch
+// bulk work; the shared workers always drain the transactional lane first and
+// only then pick up bulk sends, so campaigns use whatever capacity is left.
+// Within a lane, capacity is shared between organizations by weighted fair
+// queuing, so one organization's campaign cannot starve the others.
+// Organization names come from requests, so per-organization meters exist only
+// for the default tenant and those listed in mail.dispatch.tenant-weights; all
+// others are counted together under tenant "other".
+@Component
+public class MailDispatcher {
+
+    public enum Lane {
+        TRANSACTIONAL("transactional"),
+        BULK("bulk");
+
+        private final String value;
+
+        Lane(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    // failure is null when the send succeeded
+    public interface SendListener {
+        void sent(long elapsedNanos, RuntimeException failure);
+    }
+
+    public static final String DEFAULT_TENANT = "default";
+    public static final String OTHER_TENANT = "other";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mail.dispatch.workers:8}")
+    private int workers;
+
+    @Value("${mail.dispatch.reserved-transactional-workers:2}")
+    private int reservedWorkers;
+
+    @Value("${mail.dispatch.bulk-queue-capacity:10000}")
+    private int bulkQueueCapacity;
+
+    @Value("${mail.dispatch.transactional-latency-target:2000}")
+    private long latencyTargetMillis;
+
+    @Value("${mail.dispatch.tenant-queue-quota:2000}")
+    private int tenantQueueQuota;
+
+    @Value("${mail.dispatch.default-tenant-weight:1}")
+    private int defaultTenantWeight;
+
+    // Relative share of send capacity per organization, e.g. {'Green Earth':3}
+    @Value("#{${mail.dispatch.tenant-weights:{:}}}")
+    private Map<String, Integer> tenantWeights;
+
+    private WeightedFairQueue<Task> transactional;
+    private WeightedFairQueue<Task> bulk;
+    // One permit per queued task, so shared workers can wait on both lanes at once
+    private final Semaphore available = new Semaphore(0);
+    private final List<Thread> threads = new ArrayList<>();
+    private final Map<Lane, Timer> waitTimers = new EnumMap<>(Lane.class);
+    private final Map<Lane, Timer> sendTimers = new EnumMap<>(Lane.class);
+    private final Map<String, Counter> tenantSent = new ConcurrentHashMap<>();
+    private final List<SendListener> sendListeners = new CopyOnWriteArrayList<>();
+    private Counter latencyTargetMissed;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        // Transactional callers wait for their own send, so only the bulk lane needs a capacity bound
+        transactional = new WeightedFairQueue<>(this::weight, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        bulk = new WeightedFairQueue<>(this::weight, tenantQueueQuota, bulkQueueCapacity);
+        for (Lane lane : Lane.values()) {
+            waitTimers.put(lane, Timer.builder("mail.dispatch.queue.wait")
+                    .description("Time a message waits in its lane before a worker sends it")
+                    .tag("lane", lane.getValue())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            sendTimers.put(lane, Timer.builder("mail.dispatch.send")
+                    .description("SMTP send time")
+                    .tag("lane", lane.getValue())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            Gauge.builder("mail.dispatch.queue.depth", this, dispatcher -> dispatcher.queue(lane).size())
+                    .description("Messages waiting in the lane")
+                    .tag("lane", lane.getValue())
+                    .register(meterRegistry);
+        }
+        latencyTargetMissed = Counter.builder("mail.dispatch.latency-target.missed")
+                .description("Transactional messages that waited longer than the latency target")
+                .register(meterRegistry);
+
+        running = true;
+        int reserved = Math.max(1, Math.min(reservedWorkers, workers));
+        for (int i = 0; i < Math.max(workers, reserved); i++) {
+            boolean reservedWorker = i < reserved;
+            Thread thread = new Thread(reservedWorker ? this::workTransactional : this::workShared,
+                    "mail-dispatch-" + (reservedWorker ? "transactional-" : "shared-") + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Lane lane : Lane.values()) {
+            Task task;
+            while ((task = queue(lane).poll()) != null) {
+                task.future.completeExceptionally(new RejectedExecutionException("Mail dispatcher stopped"));
+            }
+        }
+    }
+
+    public CompletableFuture<Void> submit(Lane lane, Runnable send) {
+        return submit(lane, DEFAULT_TENANT, send);
+    }
+
+    // Queue a send for an organization; blocks while the bulk lane or the organization's quota is full
+    public CompletableFuture<Void> submit(Lane lane, String tenant, Runnable send) {
+        Task task = new Task(lane, tenant == null || tenant.isBlank() ? DEFAULT_TENANT : tenant.trim(), send);
+        if (!running) {
+            task.future.completeExceptionally(new RejectedExecutionException("Mail dispatcher stopped"));
+            return task.future;
+        }
+        try {
+            registerTenant(lane, task.tenant);
+            queue(lane).put(task.tenant, task);
+            available.release();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+
+    // Observe every SMTP send (latency and outcome), e.g. to adapt admission limits
+    public void addSendListener(SendListener listener) {
+        sendListeners.add(listener);
+    }
+
+    public int getQueueDepth(Lane lane) {
+        return queue(lane).size();
+    }
+
+    public int getQueueDepth(Lane lane, String tenant) {
+        return queue(lane).size(tenant);
+    }
+
+    // Organizations with messages waiting in the lane
+    public int getQueuedTenants(Lane lane) {
+        return queue(lane).tenantCount();
+    }
+
+    private WeightedFairQueue<Task> queue(Lane lane) {
+        return lane == Lane.TRANSACTIONAL ? transactional : bulk;
+    }
+
+    private int weight(String tenant) {
+        Integer weight = tenantWeights != null ? tenantWeights.get(tenant) : null;
+        return weight != null ? weight : defaultTenantWeight;
+    }
+
+    // Tenant tag for meters: configured organizations and the default keep their own, the rest share one
+    private String meterTenant(String tenant) {
+        if (DEFAULT_TENANT.equals(tenant) || (tenantWeights != null && tenantWeights.containsKey(tenant))) {
+            return tenant;
+        }
+        return OTHER_TENANT;
+    }
+
+    // Per-organization depth gauge and sent counter, registered the first time an organization sends on a lane
+    private void registerTenant(Lane lane, String tenant) {
+        String meterTenant = meterTenant(tenant);
+        tenantSent.computeIfAbsent(lane.getValue() + ":" + meterTenant, key -> {
+            if (!OTHER_TENANT.equals(meterTenant)) {
+                Gauge.builder("mail.dispatch.tenant.queue.depth", this, dispatcher -> dispatcher.getQueueDepth(lane, meterTenant))
+                        .description("Messages waiting for the organization in the lane")
+                        .tag("lane", lane.getValue())
+                        .tag("tenant", meterTenant)
+                        .register(meterRegistry);
+            }
+            return Counter.builder("mail.dispatch.tenant.sent")
+                    .description("Messages sent for the organization; the rate is its throughput")
+                    .tag("lane", lane.getValue())
+                    .tag("tenant", meterTenant)
+                    .register(meterRegistry);
+        });
+    }
+
+    private void workTransactional() {
+        while (running) {
+            try {
+                Task task = transactional.take();
+                // The permit is left for a shared worker, which will find the lane empty and wait again
+                run(task);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void workShared() {
+        while (running) {
+            try {
+                available.acquire();
+                Task task = transactional.poll();
+                if (task == null) {
+                    task = bulk.poll();
+                }
+                if (task != null) {
+                    run(task);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void run(Task task) {
+        long started = System.nanoTime();
+        long waited = started - task.enqueuedNanos;
+        waitTimers.get(task.lane).record(waited, TimeUnit.NANOSECONDS);
+        if (task.lane == Lane.TRANSACTIONAL && waited > TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis)) {
+            latencyTargetMissed.increment();
+        }
+        RuntimeException failure = null;
+        try {
+            task.send.run();
+            tenantSent.get(task.lane.getValue() + ":" + meterTenant(task.tenant)).increment();
+            task.future.complete(null);
+        } catch (RuntimeException e) {
+            failure = e;
+            task.future.completeExceptionally(e);
+        }
+        long elapsed = System.nanoTime() - started;
+        sendTimers.get(task.lane).record(elapsed, TimeUnit.NANOSECONDS);
+        for (SendListener listener : sendListeners) {
+            listener.sent(elapsed, failure);
+        }
+    }
+
+    private static class Task {
+
+        private final Lane lane;
+        private final String tenant;
+        private final Runnable send;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Task(Lane lane, String tenant, Runnable send) {
+            this.lane = lane;
+            this.tenant = tenant;
+            this.send = send;
+        }
+    }
+}
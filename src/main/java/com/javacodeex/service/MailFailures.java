@@ -0,0 +1,45 @@
+package com.javacodeex.service;
+
+import jakarta.mail.SendFailedException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+
+// Classification of send failures. A message-level failure is caused by the
+// message itself (unparseable content, addresses the server rejected) and says
+// nothing about the health of the SMTP server, so it should neither be retried
+// elsewhere nor count against the server. A partially sent message was already
+// accepted for some recipients, so it must not be resent as a whole either.
+public final class MailFailures {
+
+    private MailFailures() {
+    }
+
+    public static boolean isMessageFailure(Throwable e) {
+        if (e instanceof MailParseException || e instanceof MailPreparationException) {
+            return true;
+        }
+        if (e instanceof MailSendException sendException) {
+            for (Exception failure : sendException.getFailedMessages().values()) {
+                if (failure instanceof SendFailedException sendFailed
+                        && sendFailed.getInvalidAddresses() != null && sendFailed.getInvalidAddresses().length > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Some recipients were accepted before the send failed
+    public static boolean isPartiallySent(Throwable e) {
+        if (e instanceof MailSendException sendException) {
+            for (Exception failure : sendException.getFailedMessages().values()) {
+                if (failure instanceof SendFailedException sendFailed
+                        && sendFailed.getValidSentAddresses() != null && sendFailed.getValidSentAddresses().length > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+package com.javacodeex.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Personalized bulk email. Subject and message are compiled once per campaign;
+// each recipient's copy is rendered (placeholders, Thymeleaf, MIME assembly) on a
+// fork-join pool sized to the cores and handed to the dispatcher's bulk lane for
+// SMTP I/O, so rendering never waits on the network. The hand-off itself can
+// block while the bulk lane or the organization's quota is full, so it runs on
+// its own dispatch threads rather than on the render pool. A semaphore caps how
+// many messages of one merge can be rendering or waiting for a sender at once.
+@Slf4j
+@Service
+public class MailMergeService {
+
+    @Autowired
+    private EmailService emailService;
+
+    @Value("${mail.merge.render-parallelism:0}")
+    private int renderParallelism;
+
+    @Value("${mail.merge.max-in-flight:256}")
+    private int maxInFlight;
+
+    @Value("${mail.merge.shutdown-timeout:30000}")
+    private long shutdownTimeoutMillis;
+
+    private ForkJoinPool renderPool;
+    // At most max-in-flight threads per running merge, since each waits on one rendered message
+    private ExecutorService dispatchExecutor;
+
+    @PostConstruct
+    public void start() {
+        int parallelism = renderParallelism > 0 ? renderParallelism : Runtime.getRuntime().availableProcessors();
+        renderPool = new ForkJoinPool(parallelism);
+        dispatchExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mail-merge-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Let renders already started finish (they hand off to the dispatcher, which stops after us)
+    @PreDestroy
+    public void stop() {
+        renderPool.shutdown();
+        try {
+            if (!renderPool.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("Mail merge renders still running after {} ms; cancelling", shutdownTimeoutMillis);
+                renderPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            renderPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            // Hand-offs of renders that finished go on; nothing new is accepted
+            dispatchExecutor.shutdown();
+        }
+    }
+
+    // Render and send one message per recipient; returns the addresses that failed, in request order
+    public List<String> sendMerge(String subject, String message, List<MergeRecipient> recipients,
+                                  List<EmailService.AttachmentRef> attachments, String organizationName) {
+        MessageTemplate subjectTemplate = MessageTemplate.compile(subject);
+        MessageTemplate messageTemplate = MessageTemplate.compile(message);
+        List<String> failedEmails = new ArrayList<>();
+
+        try (AttachmentCache.Leases leases = emailService.acquireAttachments(attachments)) {
+            Semaphore window = new Semaphore(maxInFlight);
+            List<CompletableFuture<Boolean>> results = new ArrayList<>(recipients.size());
+            for (MergeRecipient recipient : recipients) {
+                try {
+                    window.acquire();
+                } catch (InterruptedException e) {
+                    // Stop submitting; those already submitted finish (the leases must outlive them)
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                CompletableFuture<Boolean> result = CompletableFuture
+                        .supplyAsync(() -> render(recipient, subjectTemplate, messageTemplate, leases), renderPool)
+                        .thenComposeAsync(mimeMessage -> emailService.sendAsync(mimeMessage, MailDispatcher.Lane.BULK, organizationName),
+                                dispatchExecutor)
+                        .handle((sent, error) -> {
+                            window.release();
+                            if (error != null) {
+                                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                        ? error.getCause() : error;
+                                log.error("Failed to send email to {}: {}", recipient.getEmail(), cause.getMessage());
+                                return false;
+                            }
+                            return true;
+                        });
+                results.add(result);
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).join()) {
+                    failedEmails.add(recipients.get(i).getEmail());
+                }
+            }
+            failedEmails.addAll(emails(recipients.subList(results.size(), recipients.size())));
+        } catch (MessagingException e) {
+            log.error("Failed to fetch attachments for mail merge: {}", e.getMessage());
+            return emails(recipients);
+        }
+
+        return failedEmails;
+    }
+
+    private MimeMessage render(MergeRecipient recipient, MessageTemplate subjectTemplate,
+                               MessageTemplate messageTemplate, AttachmentCache.Leases leases) {
+        Map<String, Object> variables = new HashMap<>();
+        if (recipient.getVariables() != null) {
+            variables.putAll(recipient.getVariables());
+        }
+        variables.putIfAbsent("email", recipient.getEmail());
+        try {
+            MimeMessage mimeMessage = emailService.createHtmlEmail(recipient.getEmail(),
+                    subjectTemplate.render(variables), messageTemplate.render(variables), leases);
+            // Build headers and multipart structure here rather than on a sender thread
+            mimeMessage.saveChanges();
+            return mimeMessage;
+        } catch (MessagingException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private List<String> emails(List<MergeRecipient> recipients) {
+        List<String> emails = new ArrayList<>(recipients.size());
+        for (MergeRecipient recipient : recipients) {
+            emails.add(recipient.getEmail());
+        }
+        return emails;
+    }
+
+    public static class MergeRecipient {
+        private String email;
+        private Map<String, Object> variables;
+
+        // Getters and Setters
+        public String getEmail() { return email; }
+        public void setEmail(String email) { this.email = email; }
+        public Map<String, Object> getVariables() { return variables; }
+        public void setVariables(Map<String, Object> variables) { this.variables = variables; }
+    }
+}
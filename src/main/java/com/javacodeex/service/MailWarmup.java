@@ -0,0 +1,199 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Warm-up before the instance takes traffic. Application runners finish before
+// the readiness state switches to ACCEPTING_TRAFFIC, so the readiness probe only
+// passes once this is done. It parses and renders every template (filling the
+// Thymeleaf cache), builds and serializes throwaway MIME messages (loading and
+// JIT-compiling the JavaMail and encoding paths), and test-connects each SMTP
+// sender once. That resolves DNS, loads and JIT-compiles the TLS handshake path,
+// fills the JVM's TLS session cache and checks the credentials; no connection is
+// kept, since JavaMailSenderImpl opens a fresh Transport for every send. Failures
+// are logged and never block startup.
+@Slf4j
+@Component
+public class MailWarmup implements ApplicationRunner {
+
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mail.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mail.warmup.iterations:20}")
+    private int iterations;
+
+    @Value("${mail.warmup.connect:true}")
+    private boolean connect;
+
+    // Upper bound on waiting for SMTP connections; a slow server must not hold readiness back
+    @Value("${mail.warmup.connect-timeout:10000}")
+    private long connectTimeoutMillis;
+
+    @Value("${spring.thymeleaf.prefix:classpath:/templates/}")
+    private String templatePrefix;
+
+    @Value("${spring.thymeleaf.suffix:.html}")
+    private String templateSuffix;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<String, Long> phases = new LinkedHashMap<>();
+        // Connecting is network-bound; do it while the CPU-bound phases run
+        CompletableFuture<Void> connections = connect ? CompletableFuture.runAsync(this::testConnections)
+                : CompletableFuture.completedFuture(null);
+        phase(phases, "templates", this::renderTemplates);
+        phase(phases, "mime", this::buildMessages);
+        phase(phases, "connections", () -> awaitConnections(connections));
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Mail warm-up finished in {}ms {}", totalMillis, phases);
+    }
+
+    private void phase(Map<String, Long> phases, String name, Runnable work) {
+        long start = System.nanoTime();
+        work.run();
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("mail.warmup")
+                .description("Time spent warming up before accepting traffic")
+                .tag("phase", name)
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        phases.put(name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private void awaitConnections(CompletableFuture<Void> connections) {
+        try {
+            connections.get(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("SMTP warm-up connections not done after {}ms; continuing", connectTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Failed to warm up SMTP connections: {}", e.getCause().getMessage());
+        }
+    }
+
+    private void renderTemplates() {
+        Resource[] templates;
+        try {
+            templates = new PathMatchingResourcePatternResolver().getResources(templatePrefix + "*" + templateSuffix);
+        } catch (IOException e) {
+            log.warn("Failed to list templates for warm-up: {}", e.getMessage());
+            return;
+        }
+        for (int i = 0; i < iterations; i++) {
+            for (Resource template : templates) {
+                String filename = template.getFilename();
+                if (filename == null) {
+                    continue;
+                }
+                String name = filename.substring(0, filename.length() - templateSuffix.length());
+                try {
+                    templateEngine.process(name, new Context());
+                } catch (RuntimeException e) {
+                    if (i == 0) {
+                        log.warn("Failed to warm up template {}: {}", name, e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private void buildMessages() {
+        try {
+            for (int i = 0; i < iterations; i++) {
+                MimeMessage message = emailService.createHtmlEmail("warmup@example.invalid",
+                        "Warm-up " + i, "Warm-up message");
+                message.saveChanges();
+                message.writeTo(OutputStream.nullOutputStream());
+            }
+        } catch (MessagingException | IOException e) {
+            log.warn("Failed to warm up MIME messages: {}", e.getMessage());
+        }
+    }
+
+    private void testConnections() {
+        List<JavaMailSenderImpl> senders = new ArrayList<>();
+        if (mailSender instanceof RoutingMailSender routing) {
+            for (RoutingMailSender.Provider provider : routing.getProviders()) {
+                if (provider.getSender() instanceof JavaMailSenderImpl sender) {
+                    senders.add(sender);
+                }
+            }
+        } else if (mailSender instanceof JavaMailSenderImpl sender) {
+            senders.add(sender);
+        }
+        List<CompletableFuture<Void>> tests = new ArrayList<>();
+        for (JavaMailSenderImpl sender : senders) {
+            tests.add(CompletableFuture.runAsync(() -> {
+                try {
+                    testConnection(sender);
+                } catch (MessagingException e) {
+                    log.warn("Failed to warm up SMTP connection to {}: {}", sender.getHost(), e.getMessage());
+                }
+            }));
+        }
+        CompletableFuture.allOf(tests.toArray(new CompletableFuture[0])).join();
+    }
+
+    // Connects (EHLO, STARTTLS, AUTH) and closes again. The sender's own session has no
+    // socket timeouts by default, so this runs on a copy whose connect and read are bounded
+    // by the warm-up timeout; an unresponsive server then fails here instead of leaving
+    // the connection thread blocked after awaitConnections has given up on it.
+    private void testConnection(JavaMailSenderImpl sender) throws MessagingException {
+        Properties properties = new Properties();
+        properties.putAll(sender.getSession().getProperties());
+        String prefix = "mail." + sender.getProtocol() + ".";
+        properties.put(prefix + "connectiontimeout", String.valueOf(connectTimeoutMillis));
+        properties.put(prefix + "timeout", String.valueOf(connectTimeoutMillis));
+        Transport transport = Session.getInstance(properties).getTransport(sender.getProtocol());
+        try {
+            transport.connect(sender.getHost(), sender.getPort(), sender.getUsername(), sender.getPassword());
+        } finally {
+            transport.close();
+        }
+    }
+}
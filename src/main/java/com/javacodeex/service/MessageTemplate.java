@@ -0,0 +1,146 @@
+package com.javacodeex.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// A text template compiled once into literal and placeholder segments.
+// Placeholders are written {{name}}; rendering just appends segments, with no
+// parsing per call. Missing variables render as an empty string.
+// compileFormat() takes a String.format-style text with %s placeholders instead;
+// render(Object...) then gives the same output as String.format, built in a
+// StringBuilder sized exactly once the arguments are known.
+public final class MessageTemplate {
+
+    private final String[] literals;
+    private final String[] names;
+    // Positional templates: argument index of each placeholder (null for named templates)
+    private final int[] arguments;
+    private final int literalLength;
+
+    private MessageTemplate(String[] literals, String[] names, int[] arguments) {
+        this.literals = literals;
+        this.names = names;
+        this.arguments = arguments;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static MessageTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        String text = source != null ? source : "";
+        int position = 0;
+        while (true) {
+            int open = text.indexOf("{{", position);
+            int close = open < 0 ? -1 : text.indexOf("}}", open + 2);
+            if (close < 0) {
+                literals.add(text.substring(position));
+                break;
+            }
+            literals.add(text.substring(position, open));
+            names.add(text.substring(open + 2, close).trim());
+            position = close + 2;
+        }
+        return new MessageTemplate(literals.toArray(new String[0]), names.toArray(new String[0]), null);
+    }
+
+    // Only %s, %n and %% are supported; anything else is rejected here rather than at render time
+    public static MessageTemplate compileFormat(String format) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int placeholders = 0;
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            char conversion = i + 1 < format.length() ? format.charAt(++i) : ' ';
+            if (conversion == 's') {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                placeholders++;
+            } else if (conversion == 'n') {
+                literal.append(System.lineSeparator());
+            } else if (conversion == '%') {
+                literal.append('%');
+            } else {
+                throw new IllegalArgumentException("Unsupported format conversion %" + conversion + " at index " + (i - 1));
+            }
+        }
+        literals.add(literal.toString());
+        int[] arguments = new int[placeholders];
+        for (int i = 0; i < placeholders; i++) {
+            arguments[i] = i;
+        }
+        return new MessageTemplate(literals.toArray(new String[0]), null, arguments);
+    }
+
+    public boolean hasPlaceholders() {
+        return literals.length > 1;
+    }
+
+    public String render(Map<String, ?> variables) {
+        if (names == null) {
+            throw new IllegalStateException("Positional template; use render(Object...)");
+        }
+        if (names.length == 0) {
+            return literals[0];
+        }
+        StringBuilder out = new StringBuilder(literalLength + names.length * 16);
+        for (int i = 0; i < names.length; i++) {
+            out.append(literals[i]);
+            Object value = variables != null ? variables.get(names[i]) : null;
+            if (value != null) {
+                out.append(value);
+            }
+        }
+        return out.append(literals[names.length]).toString();
+    }
+
+    // Same text as String.format(format, args): null arguments render as "null"
+    public String render(Object... args) {
+        String[] values = values(args);
+        int length = literalLength;
+        for (String value : values) {
+            length += value.length();
+        }
+        return appendTo(new StringBuilder(length), values).toString();
+    }
+
+    // Append to a caller-owned builder, e.g. one reused across messages
+    public StringBuilder renderTo(StringBuilder out, Object... args) {
+        String[] values = values(args);
+        int length = out.length() + literalLength;
+        for (String value : values) {
+            length += value.length();
+        }
+        out.ensureCapacity(length);
+        return appendTo(out, values);
+    }
+
+    private String[] values(Object[] args) {
+        if (arguments == null) {
+            throw new IllegalStateException("Named template; use render(Map)");
+        }
+        String[] values = new String[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            if (args == null || arguments[i] >= args.length) {
+                throw new IllegalArgumentException("Missing argument for placeholder " + i);
+            }
+            values[i] = String.valueOf(args[arguments[i]]);
+        }
+        return values;
+    }
+
+    private StringBuilder appendTo(StringBuilder out, String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            out.append(literals[i]).append(values[i]);
+        }
+        return out.append(literals[values.length]);
+    }
+}
@@ -0,0 +1,278 @@
+package com.javacodeex.service;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.Timestamp;
+import com.javacodeex.model.Notification;
+import com.javacodeex.model.NotificationArchiveSegment;
+import com.javacodeex.repository.NotificationArchiveSegmentRepository;
+import com.javacodeex.repository.NotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Moves read notifications older than min-age out of Firestore into S3.
+// Each batch (oldest first) is split by UTC day, and every day becomes one
+// gzip NDJSON segment under <prefix>yyyy/MM/dd/, stored in a cheaper storage
+// class. A segment is written to S3 first, then indexed in Firestore (day,
+// time range, emails it contains), and only then are its notifications
+// deleted, so a crash at any point loses nothing: at worst a batch is archived
+// twice, and the segment id is a hash of the notification ids so the retry
+// usually overwrites the same object and index entry. Lookups read the index
+// by email and de-duplicate by id.
+@Slf4j
+@Service
+public class NotificationArchiveService {
+
+    private static final DateTimeFormatter PARTITION = DateTimeFormatter.ofPattern("yyyy/MM/dd").withZone(ZoneOffset.UTC);
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationArchiveSegmentRepository segmentRepository;
+
+    // Built on the first archival run or lookup rather than at startup
+    @Lazy
+    @Autowired
+    private AmazonS3 s3;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${aws.s3.bucket-name}")
+    private String bucketName;
+
+    @Value("${notifications.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${notifications.archive.min-age-days:365}")
+    private long minAgeDays;
+
+    @Value("${notifications.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${notifications.archive.max-batches-per-run:100}")
+    private int maxBatchesPerRun;
+
+    @Value("${notifications.archive.interval:3600000}")
+    private long intervalMillis;
+
+    @Value("${notifications.archive.prefix:archive/notifications/}")
+    private String prefix;
+
+    // Same bucket: archive segments must never be attachable, nor attachments archived over
+    @Value("${attachments.key-prefix:attachments/}")
+    private String attachmentsPrefix;
+
+    // Empty keeps the bucket default (MinIO only knows STANDARD)
+    @Value("${notifications.archive.storage-class:STANDARD_IA}")
+    private String storageClass;
+
+    @Value("${notifications.archive.timeout:30000}")
+    private long timeoutMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicBoolean archiving = new AtomicBoolean();
+    private Counter archivedCounter;
+    private Thread worker;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (prefix == null || prefix.isBlank() || !prefix.endsWith("/")) {
+            throw new IllegalStateException("notifications.archive.prefix must be a non-empty folder prefix ending in '/'");
+        }
+        if (attachmentsPrefix != null && (prefix.startsWith(attachmentsPrefix) || attachmentsPrefix.startsWith(prefix))) {
+            throw new IllegalStateException("notifications.archive.prefix " + prefix
+                    + " overlaps attachments.key-prefix " + attachmentsPrefix);
+        }
+        archivedCounter = Counter.builder("notifications.archived")
+                .description("Notifications moved from Firestore to the S3 archive")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(() -> {
+            while (running) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    long archived = archive();
+                    if (archived > 0) {
+                        log.info("Archived {} notifications to s3://{}/{}", archived, bucketName, prefix);
+                    }
+                } catch (RuntimeException | IOException e) {
+                    log.warn("Notification archival failed: {}", e.getMessage());
+                }
+            }
+        }, "notification-archive");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker.join(5000);
+    }
+
+    // One archival run; returns the number of notifications moved (0 if a run is already in progress)
+    public long archive() throws IOException {
+        if (!archiving.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            Instant cutoffInstant = Instant.now().minus(Duration.ofDays(minAgeDays));
+            Timestamp cutoff = Timestamp.ofTimeSecondsAndNanos(cutoffInstant.getEpochSecond(), 0);
+            long archived = 0;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                List<Notification> page = notificationRepository
+                        .findByReadAndTimestampLessThanOrderByTimestampAsc(true, cutoff, PageRequest.of(0, batchSize))
+                        .collectList()
+                        .block(Duration.ofMillis(timeoutMillis));
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                Map<String, List<Notification>> partitions = new LinkedHashMap<>();
+                for (Notification notification : page) {
+                    partitions.computeIfAbsent(PARTITION.format(notification.getTimestamp().toDate().toInstant()),
+                            key -> new ArrayList<>()).add(notification);
+                }
+                for (Map.Entry<String, List<Notification>> partition : partitions.entrySet()) {
+                    archivePartition(partition.getKey(), partition.getValue());
+                }
+                archived += page.size();
+                if (page.size() < batchSize) {
+                    break;
+                }
+            }
+            return archived;
+        } finally {
+            archiving.set(false);
+        }
+    }
+
+    // Archived notifications of an email, newest first, in the export row format
+    public List<Map<String, Object>> findArchived(String email) throws IOException {
+        List<NotificationArchiveSegment> segments = segmentRepository.findByEmailsContaining(email)
+                .collectList()
+                .block(Duration.ofMillis(timeoutMillis));
+        Map<String, Map<String, Object>> rows = new LinkedHashMap<>();
+        if (segments == null) {
+            return new ArrayList<>();
+        }
+        for (NotificationArchiveSegment segment : segments) {
+            try (S3Object object = s3.getObject(bucketName, segment.getObjectKey());
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(
+                         new GZIPInputStream(object.getObjectContent()), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Map<String, Object> row = objectMapper.readValue(line, new TypeReference<Map<String, Object>>() { });
+                    if (email.equals(row.get("email"))) {
+                        rows.putIfAbsent(String.valueOf(row.get("id")), row);
+                    }
+                }
+            }
+        }
+        List<Map<String, Object>> result = new ArrayList<>(rows.values());
+        result.sort(Comparator.comparing((Map<String, Object> row) -> Timestamp.parseTimestamp((String) row.get("timestamp"))).reversed());
+        return result;
+    }
+
+    private void archivePartition(String partition, List<Notification> notifications) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            for (Notification notification : notifications) {
+                gzip.write(objectMapper.writeValueAsBytes(NotificationExportService.toRow(notification)));
+                gzip.write('\n');
+            }
+        }
+        byte[] body = buffer.toByteArray();
+        String segmentId = segmentId(notifications);
+        String key = prefix + partition + "/" + segmentId + ".ndjson.gz";
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(body.length);
+        metadata.setContentType("application/gzip");
+        PutObjectRequest request = new PutObjectRequest(bucketName, key, new ByteArrayInputStream(body), metadata);
+        if (!storageClass.isBlank()) {
+            request.setStorageClass(storageClass);
+        }
+        s3.putObject(request);
+
+        NotificationArchiveSegment segment = new NotificationArchiveSegment();
+        segment.setId(segmentId);
+        segment.setObjectKey(key);
+        segment.setPartition(partition);
+        LinkedHashSet<String> emails = new LinkedHashSet<>();
+        for (Notification notification : notifications) {
+            emails.add(notification.getEmail());
+        }
+        segment.setEmails(new ArrayList<>(emails));
+        segment.setCount(notifications.size());
+        segment.setBytes(body.length);
+        segment.setOldest(notifications.get(0).getTimestamp());
+        segment.setNewest(notifications.get(notifications.size() - 1).getTimestamp());
+        segment.setArchivedAt(Timestamp.now());
+        segmentRepository.save(segment).block(Duration.ofMillis(timeoutMillis));
+
+        notificationRepository.deleteAll(notifications).block(Duration.ofMillis(timeoutMillis));
+        archivedCounter.increment(notifications.size());
+    }
+
+    private static String segmentId(List<Notification> notifications) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Notification notification : notifications) {
+                digest.update(notification.getId().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.javacodeex.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Digest mode for notification emails. The first notification for a recipient
+// opens a window; everything else for that recipient inside the window is
+// coalesced in memory and sent as one digestTemplate email when it closes.
+// Memory is bounded: past max-recipients, notifications are sent immediately,
+// and each notification type keeps at most max-items-per-type samples (the
+// rest are only counted). Open digests are flushed on shutdown.
+@Slf4j
+@Service
+public class NotificationDigestService {
+
+    @Autowired
+    private EmailService emailService;
+
+    @Value("${notifications.digest.enabled:false}")
+    private boolean enabled;
+
+    @Value("${notifications.digest.window:300000}")
+    private long windowMillis;
+
+    @Value("${notifications.digest.max-recipients:10000}")
+    private int maxRecipients;
+
+    @Value("${notifications.digest.max-items-per-type:20}")
+    private int maxItemsPerType;
+
+    @Value("${notifications.digest.flush-interval:1000}")
+    private long flushIntervalMillis;
+
+    private final Map<String, Digest> digests = new ConcurrentHashMap<>();
+    private final AtomicInteger recipients = new AtomicInteger();
+    private Thread flusher;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(() -> {
+            while (running) {
+                try {
+                    Thread.sleep(flushIntervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                flush(false);
+            }
+        }, "notification-digest");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        flusher.join(5000);
+        List<CompletableFuture<Void>> sends = flush(true);
+        try {
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.error("Failed to send notification digests on shutdown: {}", e.getMessage());
+        }
+    }
+
+    // Send now, or add to the recipient's open digest when digest mode is on
+    public void sendNotificationEmail(String to, String notificationType, Map<String, Object> data) throws MessagingException {
+        if (!enabled || !buffer(to, notificationType, data)) {
+            emailService.sendNotificationEmail(to, notificationType, data);
+        }
+    }
+
+    public int getOpenDigestCount() {
+        return digests.size();
+    }
+
+    private boolean buffer(String to, String notificationType, Map<String, Object> data) {
+        long now = System.currentTimeMillis();
+        boolean[] buffered = {false};
+        digests.compute(to, (key, digest) -> {
+            if (digest == null) {
+                if (recipients.get() >= maxRecipients) {
+                    return null;
+                }
+                recipients.incrementAndGet();
+                digest = new Digest(now);
+            }
+            digest.add(notificationType, data != null ? data : Map.of(), now, maxItemsPerType);
+            buffered[0] = true;
+            return digest;
+        });
+        return buffered[0];
+    }
+
+    private List<CompletableFuture<Void>> flush(boolean all) {
+        long now = System.currentTimeMillis();
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        for (Map.Entry<String, Digest> entry : digests.entrySet()) {
+            Digest digest = entry.getValue();
+            if ((all || now - digest.firstAt >= windowMillis) && digests.remove(entry.getKey(), digest)) {
+                recipients.decrementAndGet();
+                sends.add(send(entry.getKey(), digest));
+            }
+        }
+        return sends;
+    }
+
+    private CompletableFuture<Void> send(String to, Digest digest) {
+        try {
+            if (digest.total == 1) {
+                // Nothing was coalesced; send the usual single notification
+                EmailService.DigestGroup group = digest.groups.values().iterator().next();
+                emailService.sendNotificationEmail(to, group.getType(), group.getData().get(0));
+                return CompletableFuture.completedFuture(null);
+            }
+            return emailService.queueNotificationDigestEmail(to, new ArrayList<>(digest.groups.values()),
+                    digest.firstAt, digest.lastAt)
+                    .whenComplete((sent, error) -> {
+                        if (error != null) {
+                            log.error("Failed to send notification digest to {}: {}", to, error.getMessage());
+                        }
+                    });
+        } catch (MessagingException | RuntimeException e) {
+            log.error("Failed to send notification digest to {}: {}", to, e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    // Mutated only inside digests.compute, so never after it has been removed for sending
+    private static class Digest {
+
+        private final long firstAt;
+        private long lastAt;
+        private int total;
+        private final Map<String, EmailService.DigestGroup> groups = new LinkedHashMap<>();
+
+        Digest(long firstAt) {
+            this.firstAt = firstAt;
+        }
+
+        void add(String type, Map<String, Object> data, long now, int maxItemsPerType) {
+            EmailService.DigestGroup group = groups.computeIfAbsent(type, key -> {
+                EmailService.DigestGroup created = new EmailService.DigestGroup();
+                created.setType(key);
+                return created;
+            });
+            group.setCount(group.getCount() + 1);
+            if (group.getData().size() < maxItemsPerType) {
+                group.getData().add(data);
+            }
+            lastAt = now;
+            total++;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.javacodeex.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.Timestamp;
+import com.javacodeex.model.Notification;
+import com.javacodeex.repository.NotificationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Full notification history of one email as NDJSON (one JSON object per line),
+// newest first. The repository is read one keyset page at a time (timestamp <=
+// the last one written), and the next page is only fetched once the previous
+// one has been written and flushed, so a slow client slows the reads down and
+// memory stays at one page however long the history is. Notifications sharing
+// the cursor timestamp are de-duplicated by id across page boundaries.
+@Service
+public class NotificationExportService {
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Value("${notifications.export.page-size:500}")
+    private int pageSize;
+
+    @Value("${notifications.export.page-timeout:30000}")
+    private long pageTimeoutMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Returns the number of notifications written
+    public long writeNdjson(String email, OutputStream out) throws IOException {
+        Timestamp cursor = Timestamp.MAX_VALUE;
+        Set<String> seenAtCursor = new HashSet<>();
+        long written = 0;
+        while (true) {
+            int limit = pageSize + seenAtCursor.size();
+            List<Notification> page = notificationRepository
+                    .findByEmailAndTimestampLessThanEqualOrderByTimestampDesc(email, cursor, PageRequest.of(0, limit))
+                    .collectList()
+                    .block(Duration.ofMillis(pageTimeoutMillis));
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            for (Notification notification : page) {
+                if (notification.getTimestamp().equals(cursor) && seenAtCursor.contains(notification.getId())) {
+                    continue;
+                }
+                out.write(objectMapper.writeValueAsBytes(toRow(notification)));
+                out.write('\n');
+                written++;
+            }
+            out.flush();
+            if (page.size() < limit) {
+                break;
+            }
+            Timestamp last = page.get(page.size() - 1).getTimestamp();
+            if (!last.equals(cursor)) {
+                seenAtCursor.clear();
+                cursor = last;
+            }
+            for (Notification notification : page) {
+                if (notification.getTimestamp().equals(cursor)) {
+                    seenAtCursor.add(notification.getId());
+                }
+            }
+        }
+        return written;
+    }
+
+    // One NDJSON row; also the record format of archived segments
+    static Map<String, Object> toRow(Notification notification) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", notification.getId());
+        row.put("title", notification.getTitle());
+        row.put("content", notification.getContent());
+        row.put("read", notification.isRead());
+        row.put("timestamp", notification.getTimestamp().toString());
+        row.put("email", notification.getEmail());
+        return row;
+    }
+}
@@ -0,0 +1,188 @@
+package com.javacodeex.service;
+
+import com.javacodeex.config.NotificationFrameCodec;
+import com.javacodeex.model.Notification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Pushes saved notifications to WebSocket subscribers off the request/save path.
+// Each destination is pinned to one shard so per-topic ordering is preserved,
+// and a shard that finds several pending notifications for the same topic can
+// collapse them into a single frame.
+@Slf4j
+@Service
+public class NotificationFanoutService {
+
+    public static final String DESTINATION_PREFIX = "/topic/notifications/";
+
+    @Autowired
+    private SimpMessageSendingOperations messagingTemplate;
+
+    @Autowired
+    private NotificationFrameCodec frameCodec;
+
+    @Autowired
+    private NotificationLatencyTracker latencyTracker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${notifications.fanout.shards:4}")
+    private int shardCount;
+
+    @Value("${notifications.fanout.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // How long publish() waits for room in a saturated shard before shedding the push
+    @Value("${notifications.fanout.offer-timeout:1000}")
+    private long offerTimeoutMillis;
+
+    @Value("${notifications.fanout.batch-size:64}")
+    private int batchSize;
+
+    @Value("${notifications.fanout.batching-enabled:false}")
+    private boolean batchingEnabled;
+
+    private Shard[] shards;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void start() {
+        droppedCounter = Counter.builder("notifications.fanout.dropped")
+                .description("Pushes shed because their fan-out shard stayed full")
+                .register(meterRegistry);
+        shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i);
+            shards[i].start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Shard shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    // Queue a notification for delivery to /topic/notifications/{email}
+    public void publish(Notification notification) {
+        String destination = DESTINATION_PREFIX + notification.getEmail();
+        Shard shard = shards[Math.floorMod(destination.hashCode(), shards.length)];
+        shard.pending.incrementAndGet();
+        boolean queued;
+        try {
+            queued = shard.queue.offer(notification, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            shard.pending.decrementAndGet();
+            // Never deliver around the queue: that would overtake the pushes already
+            // queued for this topic. The notification is saved, so clients still see it
+            // on their next fetch.
+            droppedCounter.increment();
+        }
+    }
+
+    // Number of notifications accepted but not yet handed to the broker
+    public int getPendingCount() {
+        int pending = 0;
+        for (Shard shard : shards) {
+            pending += shard.pending.get();
+        }
+        return pending;
+    }
+
+    private void send(String destination, List<Notification> notifications) {
+        if (batchingEnabled && notifications.size() > 1) {
+            messagingTemplate.convertAndSend(destination, notifications, frameCodec.sourceHeaders(notifications));
+            notifications.forEach(notification -> latencyTracker.published(notification.getId()));
+            return;
+        }
+        for (Notification notification : notifications) {
+            messagingTemplate.convertAndSend(destination, notification, frameCodec.sourceHeaders(notification));
+            latencyTracker.published(notification.getId());
+        }
+    }
+
+    private void drain(List<Notification> batch) {
+        Map<String, List<Notification>> byDestination = new LinkedHashMap<>();
+        for (Notification notification : batch) {
+            byDestination.computeIfAbsent(DESTINATION_PREFIX + notification.getEmail(), key -> new ArrayList<>())
+                    .add(notification);
+        }
+        for (Map.Entry<String, List<Notification>> entry : byDestination.entrySet()) {
+            try {
+                send(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                // Log the error but keep the shard alive for other destinations
+                log.error("Failed to push notifications to {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private class Shard extends Thread {
+
+        private final BlockingQueue<Notification> queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean running = true;
+
+        Shard(int index) {
+            super("notification-fanout-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Notification> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    Notification first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, Math.max(0, batchSize - 1));
+                    drain(batch);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        queue.drainTo(batch);
+                        drain(batch);
+                        return;
+                    }
+                } finally {
+                    pending.addAndGet(-batch.size());
+                    batch.clear();
+                }
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            interrupt();
+            try {
+                join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
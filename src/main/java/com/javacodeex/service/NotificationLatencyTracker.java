@@ -0,0 +1,217 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Stage-by-stage latency of a notification: create -> Firestore save (persist),
+// save -> handed to the broker (publish, includes fan-out queueing) and, when the
+// client acknowledges on /app/notifications/ack, publish -> ack and create -> ack.
+// A notification is recorded on its first ack only: the entry leaves the
+// in-flight map and its id is remembered for the ack timeout, so further acks
+// (other tabs of the same organization) are counted as duplicates. Only ids that
+// matched a tracked entry are remembered, so acks for arbitrary ids can't grow
+// memory. Entries are dropped by age on a timer; past max-in-flight the oldest are
+// dropped early. Acks for notifications tracked elsewhere carry only the client's
+// idea of the creation time, so they go to their own client-reported timer and
+// never into the end-to-end one.
+@Component
+public class NotificationLatencyTracker {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${notifications.latency.ack-timeout:60000}")
+    private long ackTimeoutMillis;
+
+    @Value("${notifications.latency.max-in-flight:100000}")
+    private int maxInFlight;
+
+    @Value("${notifications.latency.sweep-interval:1000}")
+    private long sweepIntervalMillis;
+
+    private final Map<String, Stamps> inFlight = new ConcurrentHashMap<>();
+    // Persist order, oldest first; may still hold entries already acknowledged (guarded by itself for removal)
+    private final Queue<Stamps> order = new ConcurrentLinkedQueue<>();
+    // Acknowledged ids -> ack time, kept for the ack timeout to recognise repeat acks
+    private final Map<String, Long> acknowledged = new ConcurrentHashMap<>();
+
+    private Timer persistTimer;
+    private Timer publishTimer;
+    private Timer ackTimer;
+    private Timer endToEndTimer;
+    private Timer clientReportedTimer;
+    private Counter unackedCounter;
+    private Counter evictedCounter;
+    private Counter unmatchedAckCounter;
+    private Counter duplicateAckCounter;
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    public void start() {
+        persistTimer = histogram("notification.delivery.persist", "Create to Firestore save");
+        publishTimer = histogram("notification.delivery.publish", "Firestore save to broker hand-off");
+        ackTimer = histogram("notification.delivery.ack", "Broker hand-off to client acknowledgement");
+        endToEndTimer = histogram("notification.delivery.end-to-end", "Create to client acknowledgement");
+        clientReportedTimer = histogram("notification.delivery.end-to-end.client-reported",
+                "Client-reported creation time to acknowledgement, for notifications not tracked on this node; subject to clock skew");
+        unackedCounter = Counter.builder("notification.delivery.unacked")
+                .description("Notifications published but never acknowledged within the ack timeout")
+                .register(meterRegistry);
+        evictedCounter = Counter.builder("notification.delivery.evicted")
+                .description("Notifications dropped from tracking before the ack timeout because max-in-flight was reached")
+                .register(meterRegistry);
+        unmatchedAckCounter = Counter.builder("notification.delivery.ack.unmatched")
+                .description("Acknowledgements for notifications not tracked on this node")
+                .register(meterRegistry);
+        duplicateAckCounter = Counter.builder("notification.delivery.ack.duplicate")
+                .description("Acknowledgements for notifications already acknowledged")
+                .register(meterRegistry);
+        Gauge.builder("notification.delivery.in-flight", inFlight, Map::size)
+                .description("Notifications awaiting publish or acknowledgement")
+                .register(meterRegistry);
+
+        if (sweepIntervalMillis > 0) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "notification-latency-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    // Called once the Firestore save completes; createdAtNanos is System.nanoTime() at create
+    public void persisted(String notificationId, long createdAtNanos) {
+        if (notificationId == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        persistTimer.record(now - createdAtNanos, TimeUnit.NANOSECONDS);
+        Stamps stamps = new Stamps(notificationId, createdAtNanos, now);
+        inFlight.put(notificationId, stamps);
+        order.add(stamps);
+        if (inFlight.size() > maxInFlight) {
+            evictOldest();
+        }
+    }
+
+    // Called by the fan-out stage right after the frame is handed to the broker
+    public void published(String notificationId) {
+        Stamps stamps = notificationId != null ? inFlight.get(notificationId) : null;
+        if (stamps == null || stamps.publishedNanos != 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        stamps.publishedNanos = now;
+        publishTimer.record(now - stamps.persistedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Client acknowledgement; createdAtMillis (the notification timestamp, as sent by the
+    // client) covers notifications created on another node when the broker relay is in use
+    public void acknowledged(String notificationId, Long createdAtMillis) {
+        long now = System.nanoTime();
+        if (notificationId != null && inFlight.containsKey(notificationId)) {
+            if (acknowledged.putIfAbsent(notificationId, now) != null) {
+                duplicateAckCounter.increment();
+                return;
+            }
+            Stamps stamps = inFlight.remove(notificationId);
+            if (stamps != null) {
+                endToEndTimer.record(now - stamps.createdNanos, TimeUnit.NANOSECONDS);
+                if (stamps.publishedNanos != 0) {
+                    ackTimer.record(now - stamps.publishedNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            return;
+        }
+        if (notificationId != null && acknowledged.containsKey(notificationId)) {
+            duplicateAckCounter.increment();
+            return;
+        }
+        unmatchedAckCounter.increment();
+        if (createdAtMillis != null) {
+            long elapsed = System.currentTimeMillis() - createdAtMillis;
+            if (elapsed >= 0) {
+                clientReportedTimer.record(elapsed, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Drop entries older than the ack timeout (counted as unacked) and forget old acks
+    void sweep() {
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(ackTimeoutMillis);
+        synchronized (order) {
+            Stamps oldest;
+            while ((oldest = order.peek()) != null && now - oldest.persistedNanos > timeout) {
+                order.poll();
+                if (inFlight.remove(oldest.id, oldest)) {
+                    unackedCounter.increment();
+                }
+            }
+        }
+        acknowledged.values().removeIf(ackedAt -> now - ackedAt > timeout);
+    }
+
+    // Over capacity: drop the oldest tracked entries; they have not timed out, so they are not unacked
+    private void evictOldest() {
+        synchronized (order) {
+            while (inFlight.size() > maxInFlight) {
+                Stamps oldest = order.poll();
+                if (oldest == null) {
+                    return;
+                }
+                if (inFlight.remove(oldest.id, oldest)) {
+                    evictedCounter.increment();
+                }
+            }
+        }
+    }
+
+    private Timer histogram(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    private static class Stamps {
+
+        private final String id;
+        private final long createdNanos;
+        private final long persistedNanos;
+        private volatile long publishedNanos;
+
+        Stamps(String id, long createdNanos, long persistedNanos) {
+            this.id = id;
+            this.createdNanos = createdNanos;
+            this.persistedNanos = persistedNanos;
+        }
+    }
+}
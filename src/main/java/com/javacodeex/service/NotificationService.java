@@ -4,7 +4,6 @@ import com.google.cloud.Timestamp;
 import com.javacodeex.model.Notification;
 import com.javacodeex.repository.NotificationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -18,35 +17,40 @@ public class NotificationService {
     private NotificationRepository notificationRepository;
     
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private NotificationFanoutService fanoutService;
+
+    @Autowired
+    private NotificationLatencyTracker latencyTracker;
+
+    @Autowired
+    private OrganizationResolver organizationResolver;
     
-    // Create and send notification for volunteer application
-    public Mono<Notification> createVolunteerApplicationNotification(String volunteerName, String postName, String volunteerEmail) {
+    // Create and send notification for volunteer application, to the organization that owns the post
+    public Mono<Notification> createVolunteerApplicationNotification(String volunteerName, String postId, String postName, String volunteerEmail) {
+        long createdAt = System.nanoTime();
         String title = "volunteer";
         String content = volunteerName + " is applied for " + postName;
-        String organizationEmail = "yiyao52013142@gmail.com"; // For now using simple var as requested
-        
-        Notification notification = new Notification(title, content, false, Timestamp.now(), organizationEmail);
         
-        return notificationRepository.save(notification)
-                .doOnSuccess(savedNotification -> {
-                    // Send real-time notification via WebSocket
-                    messagingTemplate.convertAndSend("/topic/notifications/" + organizationEmail, savedNotification);
-                });
+        return organizationResolver.resolveOrganizationEmail(postId, postName)
+                .flatMap(organizationEmail -> save(new Notification(title, content, false, Timestamp.now(), organizationEmail), createdAt));
     }
     
-    // Create and send notification for team application
-    public Mono<Notification> createTeamApplicationNotification(String teamName, String postName, String teamMembers, String teamEmail) {
+    // Create and send notification for team application, to the organization that owns the post
+    public Mono<Notification> createTeamApplicationNotification(String teamName, String postId, String postName, String teamMembers, String teamEmail) {
+        long createdAt = System.nanoTime();
         String title = "team";
         String content = teamName + " is applied for " + postName + " with (" + teamMembers + ") team member.";
-        String organizationEmail = "yiyao52013142@gmail.com"; // For now using simple var as requested
-        
-        Notification notification = new Notification(title, content, false, Timestamp.now(), organizationEmail);
         
+        return organizationResolver.resolveOrganizationEmail(postId, postName)
+                .flatMap(organizationEmail -> save(new Notification(title, content, false, Timestamp.now(), organizationEmail), createdAt));
+    }
+
+    private Mono<Notification> save(Notification notification, long createdAt) {
         return notificationRepository.save(notification)
                 .doOnSuccess(savedNotification -> {
-                    // Send real-time notification via WebSocket
-                    messagingTemplate.convertAndSend("/topic/notifications/" + organizationEmail, savedNotification);
+                    latencyTracker.persisted(savedNotification.getId(), createdAt);
+                    // Hand off real-time WebSocket delivery to the fan-out stage
+                    fanoutService.publish(savedNotification);
                 });
     }
     
@@ -0,0 +1,180 @@
+package com.javacodeex.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.javacodeex.repository.PostRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// Post -> organization email lookup for notification routing, in front of the
+// posts collection. The cache is bounded (max-size, LRU-ish eviction) and
+// refresh-ahead: an entry older than refresh-after is still served while a
+// background reload replaces it, so a hot post never waits on Firestore again.
+// Posts that don't exist are cached too, for the shorter negative-ttl, so a bad
+// id can't send every request to the backend. At startup all posts are loaded
+// with one streaming query. Unknown posts route to the default organization email.
+// Post names are not unique: a name shared by several posts is refused (callers
+// must pass the post id), and backend failures are surfaced rather than routed
+// to the default organization.
+@Slf4j
+@Service
+public class OrganizationResolver {
+
+    private static final String ID_KEY = "id:";
+    private static final String NAME_KEY = "name:";
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${notifications.default-organization-email}")
+    private String defaultOrganizationEmail;
+
+    @Value("${notifications.organization-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${notifications.organization-cache.refresh-after:300000}")
+    private long refreshAfterMillis;
+
+    @Value("${notifications.organization-cache.expire-after:3600000}")
+    private long expireAfterMillis;
+
+    @Value("${notifications.organization-cache.negative-ttl:60000}")
+    private long negativeTtlMillis;
+
+    @Value("${notifications.organization-cache.preload:true}")
+    private boolean preload;
+
+    private AsyncLoadingCache<String, Organization> cache;
+
+    @PostConstruct
+    public void start() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(Duration.ofMillis(refreshAfterMillis))
+                .expireAfter(new Expiry<String, Organization>() {
+                    @Override
+                    public long expireAfterCreate(String key, Organization value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(value.matches == 1 ? expireAfterMillis : negativeTtlMillis);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Organization value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Organization value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync((AsyncCacheLoader<String, Organization>) this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "organization-resolver");
+        if (preload) {
+            preload();
+        }
+    }
+
+    // Organization email for a post, by id when the request has one, otherwise by name.
+    // Fails with IllegalArgumentException when only a name is given and several posts share it.
+    public Mono<String> resolveOrganizationEmail(String postId, String postName) {
+        String key = key(postId, postName);
+        if (key == null) {
+            return Mono.just(defaultOrganizationEmail);
+        }
+        return Mono.fromFuture(cache.get(key))
+                .flatMap(organization -> {
+                    if (organization.matches > 1) {
+                        return Mono.error(new IllegalArgumentException(
+                                "Post name '" + postName + "' is shared by several posts; pass the post id"));
+                    }
+                    return Mono.just(organization.email != null ? organization.email : defaultOrganizationEmail);
+                })
+                .doOnError(e -> !(e instanceof IllegalArgumentException),
+                        e -> log.warn("Failed to resolve organization for post {}: {}", key, e.getMessage()));
+    }
+
+    // Load every post in one streaming query; entries beyond max-size are simply evicted.
+    // Names are only cached once the whole stream is in, when it's known whether they are unique.
+    public Mono<Long> preload() {
+        Map<String, Organization> names = new ConcurrentHashMap<>();
+        Mono<Long> loaded = postRepository.findAll()
+                .doOnNext(post -> {
+                    if (post.getId() != null) {
+                        cache.put(ID_KEY + post.getId(), CompletableFuture.completedFuture(
+                                new Organization(post.getOrganizationEmail(), 1)));
+                    }
+                    if (post.getName() != null) {
+                        names.merge(post.getName(), new Organization(post.getOrganizationEmail(), 1),
+                                (first, second) -> new Organization(null, first.matches + 1));
+                    }
+                })
+                .count()
+                .doOnSuccess(count -> {
+                    names.forEach((name, organization) ->
+                            cache.put(NAME_KEY + name, CompletableFuture.completedFuture(organization)));
+                    log.info("Organization cache preloaded with {} posts", count);
+                })
+                .doOnError(e -> log.warn("Failed to preload organization cache: {}", e.getMessage()))
+                .cache();
+        loaded.subscribe(count -> { }, e -> { });
+        return loaded;
+    }
+
+    public long getCachedCount() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    // Two posts are enough to know a name is ambiguous
+    private CompletableFuture<Organization> load(String key, Executor executor) {
+        Mono<Organization> organization = key.startsWith(ID_KEY)
+                ? postRepository.findById(key.substring(ID_KEY.length()))
+                        .map(post -> new Organization(post.getOrganizationEmail(), 1))
+                : postRepository.findByName(key.substring(NAME_KEY.length())).take(2).collectList()
+                        .filter(posts -> !posts.isEmpty())
+                        .map(posts -> posts.size() == 1
+                                ? new Organization(posts.get(0).getOrganizationEmail(), 1)
+                                : new Organization(null, posts.size()));
+        return organization.defaultIfEmpty(new Organization(null, 0)).toFuture();
+    }
+
+    private static String key(String postId, String postName) {
+        if (postId != null && !postId.isBlank()) {
+            return ID_KEY + postId;
+        }
+        if (postName != null && !postName.isBlank()) {
+            return NAME_KEY + postName;
+        }
+        return null;
+    }
+
+    private static class Organization {
+
+        private final String email;
+        // 0 for an unknown post, 1 when found, more for a name shared by several posts
+        private final int matches;
+
+        Organization(String email, int matches) {
+            this.email = email;
+            this.matches = matches;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.javacodeex.service;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.URLName;
+import jakarta.mail.event.TransportEvent;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.smtp.SMTPMessage;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPTransport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// SMTP transport that cuts the command round trips of a send when the server
+// allows it. With PIPELINING (RFC 2920) MAIL FROM and every RCPT TO are written
+// in one go and their replies read afterwards, so the envelope costs one round
+// trip instead of one per command. With CHUNKING (RFC 3030) and
+// mail.smtp.chunksize set, the body goes out as BDAT chunks, which needs no
+// "354 go ahead" round trip before it. A server that advertises neither gets
+// the stock JavaMail conversation.
+//
+// Registered as the smtp provider in META-INF/javamail.providers; set
+// mail.smtp.pipelining=false to always use the stock conversation. DSN options
+// (SMTPMessage notify/return) are not pipelined; those messages take the stock path,
+// as do messages with non-Internet recipients.
+//
+// The message is serialized before the envelope goes out, so MAIL FROM can carry
+// the same parameters stock JavaMail sends (SMTPUTF8, AUTH=, mail.smtp.mailextension)
+// plus an exact SIZE= and BODY=8BITMIME when the server advertises them. A rejected
+// MAIL FROM or a dropped connection leaves every recipient unsent rather than
+// invalid, so it reads as a server failure, not a bad message.
+public class PipeliningSmtpTransport extends SMTPTransport {
+
+    private static final String[] IGNORE_HEADERS = { "Bcc", "Content-Length" };
+
+    public PipeliningSmtpTransport(Session session, URLName urlname) {
+        super(session, urlname);
+    }
+
+    @Override
+    public synchronized void sendMessage(Message message, Address[] addresses) throws MessagingException {
+        if (!pipeliningEnabled() || !supportsExtension("PIPELINING") || !(message instanceof MimeMessage mimeMessage)
+                || addresses == null || addresses.length == 0 || hasDsnOptions(message) || !allInternet(addresses)) {
+            super.sendMessage(message, addresses);
+            return;
+        }
+
+        MessageBuffer content = new MessageBuffer();
+        try {
+            mimeMessage.writeTo(content, IGNORE_HEADERS);
+        } catch (IOException e) {
+            notify(TransportEvent.MESSAGE_NOT_DELIVERED, message, List.of(), List.of(addresses), List.of());
+            throw new MessagingException("IOException while writing message", e);
+        }
+
+        // One write for the whole envelope; sendCommand appends the final CRLF
+        String mailFrom = mailFromCommand(mimeMessage, content);
+        StringBuilder envelope = new StringBuilder(mailFrom);
+        for (Address address : addresses) {
+            envelope.append("\r\nRCPT TO:<").append(((InternetAddress) address).getAddress()).append('>');
+        }
+        sendCommand(envelope.toString());
+
+        int mailFromCode = readServerResponse();
+        String mailFromResponse = getLastServerResponse();
+        List<Address> valid = new ArrayList<>(addresses.length);
+        List<Address> validUnsent = new ArrayList<>();
+        List<Address> invalid = new ArrayList<>();
+        boolean dropped = mailFromCode == -1;
+        for (Address address : addresses) {
+            int code = dropped ? -1 : readServerResponse();
+            if (code == 250 || code == 251) {
+                valid.add(address);
+            } else if (code == -1 || (code >= 400 && code < 500)) {
+                dropped |= code == -1;
+                validUnsent.add(address);
+            } else {
+                invalid.add(address);
+            }
+        }
+
+        if (dropped) {
+            // No reply at all: the connection is gone, which says nothing about the recipients
+            try {
+                close();
+            } catch (MessagingException e) {
+                // already closed
+            }
+            notify(TransportEvent.MESSAGE_NOT_DELIVERED, message, List.of(), List.of(addresses), List.of());
+            throw new MessagingException("Connection lost while sending the envelope: " + getLastServerResponse());
+        }
+        if (mailFromCode != 250) {
+            // Every RCPT reply is meaningless without a sender; like stock JavaMail, no address is invalid
+            simpleCommand("RSET");
+            notify(TransportEvent.MESSAGE_NOT_DELIVERED, message, List.of(), List.of(addresses), List.of());
+            throw new SMTPSendFailedException(mailFrom, mailFromCode, mailFromResponse, null, null, null, null);
+        }
+        boolean sendPartial = message instanceof SMTPMessage smtpMessage ? smtpMessage.getSendPartial()
+                : Boolean.parseBoolean(session.getProperty("mail.smtp.sendpartial"));
+        if (valid.isEmpty() || (!sendPartial && (!invalid.isEmpty() || !validUnsent.isEmpty()))) {
+            simpleCommand("RSET");
+            validUnsent.addAll(valid);
+            notify(TransportEvent.MESSAGE_NOT_DELIVERED, message, List.of(), validUnsent, invalid);
+            throw new SendFailedException("Invalid Addresses", null, null, toArray(validUnsent), toArray(invalid));
+        }
+
+        try {
+            if (chunkSize() > 0 && supportsExtension("CHUNKING")) {
+                content.writeTo(bdat());
+                finishBdat();
+            } else {
+                content.writeTo(data());
+                finishData();
+            }
+        } catch (IOException e) {
+            validUnsent.addAll(valid);
+            notify(TransportEvent.MESSAGE_NOT_DELIVERED, message, List.of(), validUnsent, invalid);
+            throw new MessagingException("IOException while sending message", e);
+        } catch (MessagingException e) {
+            validUnsent.addAll(valid);
+            notify(TransportEvent.MESSAGE_NOT_DELIVERED, message, List.of(), validUnsent, invalid);
+            throw e;
+        }
+
+        if (!invalid.isEmpty() || !validUnsent.isEmpty()) {
+            // Partial send: the message went to the accepted recipients only
+            notify(TransportEvent.MESSAGE_PARTIALLY_DELIVERED, message, valid, validUnsent, invalid);
+            throw new SendFailedException("Invalid Addresses", null, toArray(valid), toArray(validUnsent), toArray(invalid));
+        }
+        notify(TransportEvent.MESSAGE_DELIVERED, message, valid, List.of(), List.of());
+    }
+
+    // The parameters SMTPTransport.mailFrom adds, plus SIZE and BODY from the serialized message
+    private String mailFromCommand(MimeMessage message, MessageBuffer content) throws MessagingException {
+        StringBuilder command = new StringBuilder("MAIL FROM:<").append(envelopeFrom(message)).append('>');
+        if (supportsExtension("SMTPUTF8") && Boolean.parseBoolean(session.getProperty("mail.smtp.allowutf8"))) {
+            command.append(" SMTPUTF8");
+        }
+        if (supportsExtension("8BITMIME") && content.hasEightBitBytes()) {
+            command.append(" BODY=8BITMIME");
+        }
+        if (supportsExtension("SIZE")) {
+            command.append(" SIZE=").append(content.size());
+        }
+        if (supportsExtension("AUTH")) {
+            String submitter = message instanceof SMTPMessage smtpMessage ? smtpMessage.getSubmitter() : null;
+            if (submitter == null) {
+                submitter = session.getProperty("mail.smtp.submitter");
+            }
+            if (submitter != null) {
+                command.append(" AUTH=").append(xtext(submitter));
+            }
+        }
+        String extension = message instanceof SMTPMessage smtpMessage ? smtpMessage.getMailExtension() : null;
+        if (extension == null) {
+            extension = session.getProperty("mail.smtp.mailextension");
+        }
+        if (extension != null && !extension.isEmpty()) {
+            command.append(' ').append(extension);
+        }
+        return command.toString();
+    }
+
+    // RFC 3461 xtext, as SMTPTransport encodes AUTH=
+    private static String xtext(String value) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xff;
+            if (c < '!' || c > '~' || c == '+' || c == '=') {
+                encoded.append('+').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+            } else {
+                encoded.append((char) c);
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static boolean allInternet(Address[] addresses) {
+        for (Address address : addresses) {
+            if (!(address instanceof InternetAddress)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same precedence as SMTPTransport: mail.smtp.from, then the message's sender, then the local address
+    private String envelopeFrom(MimeMessage message) throws MessagingException {
+        if (message instanceof SMTPMessage smtpMessage && smtpMessage.getEnvelopeFrom() != null) {
+            return smtpMessage.getEnvelopeFrom();
+        }
+        String from = session.getProperty("mail.smtp.from");
+        if (from != null && !from.isEmpty()) {
+            return from;
+        }
+        Address[] senders = message.getFrom();
+        if (senders != null && senders.length > 0 && senders[0] instanceof InternetAddress sender) {
+            return sender.getAddress();
+        }
+        InternetAddress local = InternetAddress.getLocalAddress(session);
+        if (local == null) {
+            throw new MessagingException("Can't determine SMTP MAIL FROM address");
+        }
+        return local.getAddress();
+    }
+
+    private boolean pipeliningEnabled() {
+        return !"false".equalsIgnoreCase(session.getProperty("mail.smtp.pipelining"));
+    }
+
+    private int chunkSize() {
+        try {
+            return Integer.parseInt(session.getProperty("mail.smtp.chunksize"));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean hasDsnOptions(Message message) {
+        if (message instanceof SMTPMessage smtpMessage
+                && (smtpMessage.getNotifyOptions() != 0 || smtpMessage.getReturnOption() != 0)) {
+            return true;
+        }
+        return session.getProperty("mail.smtp.dsn.notify") != null || session.getProperty("mail.smtp.dsn.ret") != null;
+    }
+
+    private void notify(int type, Message message, List<Address> sent, List<Address> unsent, List<Address> invalid) {
+        notifyTransportListeners(type, toArray(sent), toArray(unsent), toArray(invalid), message);
+    }
+
+    private static Address[] toArray(List<Address> addresses) {
+        return addresses.toArray(new Address[0]);
+    }
+
+    private static class MessageBuffer extends ByteArrayOutputStream {
+
+        boolean hasEightBitBytes() {
+            for (int i = 0; i < count; i++) {
+                if (buf[i] < 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
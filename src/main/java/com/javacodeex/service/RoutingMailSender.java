@@ -0,0 +1,261 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessagePreparator;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// JavaMailSender that spreads sends over several named SMTP providers.
+// Providers are picked by smooth weighted round-robin (as in nginx). A provider
+// whose error rate over the current window crosses the threshold is ejected for
+// a cooldown that doubles on repeated ejection. A send that fails on one provider
+// is retried on the next healthy one, up to maxAttempts. Failures caused by the
+// message itself (bad addresses, unparseable content) are not retried, and
+// neither is a send some recipients already accepted.
+@Slf4j
+public class RoutingMailSender implements JavaMailSender {
+
+    private final List<Provider> providers;
+    private final int maxAttempts;
+    private final double errorRateThreshold;
+    private final int minRequests;
+    private final long windowNanos;
+    private final long ejectionNanos;
+
+    public RoutingMailSender(List<Provider> providers, int maxAttempts, double errorRateThreshold, int minRequests,
+                             long errorWindowMillis, long ejectionMillis, MeterRegistry meterRegistry) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("At least one mail provider is required");
+        }
+        this.providers = providers;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.errorRateThreshold = errorRateThreshold;
+        this.minRequests = minRequests;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(errorWindowMillis);
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+        for (Provider provider : providers) {
+            provider.register(meterRegistry);
+        }
+    }
+
+    public List<Provider> getProviders() {
+        return providers;
+    }
+
+    @Override
+    public MimeMessage createMimeMessage() {
+        return providers.get(0).sender.createMimeMessage();
+    }
+
+    @Override
+    public MimeMessage createMimeMessage(InputStream contentStream) throws MailException {
+        return providers.get(0).sender.createMimeMessage(contentStream);
+    }
+
+    @Override
+    public void send(MimeMessage mimeMessage) throws MailException {
+        route(sender -> sender.send(mimeMessage));
+    }
+
+    @Override
+    public void send(MimeMessage... mimeMessages) throws MailException {
+        for (MimeMessage mimeMessage : mimeMessages) {
+            send(mimeMessage);
+        }
+    }
+
+    @Override
+    public void send(MimeMessagePreparator mimeMessagePreparator) throws MailException {
+        MimeMessage mimeMessage = createMimeMessage();
+        try {
+            mimeMessagePreparator.prepare(mimeMessage);
+        } catch (MessagingException e) {
+            throw new MailParseException(e);
+        } catch (Exception e) {
+            throw new MailPreparationException(e);
+        }
+        send(mimeMessage);
+    }
+
+    @Override
+    public void send(MimeMessagePreparator... mimeMessagePreparators) throws MailException {
+        for (MimeMessagePreparator preparator : mimeMessagePreparators) {
+            send(preparator);
+        }
+    }
+
+    @Override
+    public void send(SimpleMailMessage simpleMessage) throws MailException {
+        route(sender -> sender.send(simpleMessage));
+    }
+
+    @Override
+    public void send(SimpleMailMessage... simpleMessages) throws MailException {
+        for (SimpleMailMessage simpleMessage : simpleMessages) {
+            send(simpleMessage);
+        }
+    }
+
+    private void route(Consumer<JavaMailSender> send) {
+        List<Provider> tried = new ArrayList<>(maxAttempts);
+        MailException last = null;
+        for (int attempt = 0; attempt < maxAttempts && tried.size() < providers.size(); attempt++) {
+            Provider provider = pick(tried);
+            tried.add(provider);
+            try {
+                send.accept(provider.sender);
+                record(provider, true);
+                return;
+            } catch (MailException e) {
+                if (!isProviderFailure(e)) {
+                    // The message itself is at fault; another provider would reject it too
+                    record(provider, true);
+                    throw e;
+                }
+                record(provider, false);
+                if (MailFailures.isPartiallySent(e)) {
+                    // Some recipients already have it; resending elsewhere would deliver it to them twice
+                    throw e;
+                }
+                provider.failovers.increment();
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    // Smooth weighted round-robin over healthy providers not yet tried for this message
+    private synchronized Provider pick(List<Provider> exclude) {
+        long now = System.nanoTime();
+        Provider best = null;
+        int total = 0;
+        for (Provider provider : providers) {
+            if (exclude.contains(provider) || !provider.isAvailable(now)) {
+                continue;
+            }
+            provider.currentWeight += provider.weight;
+            total += provider.weight;
+            if (best == null || provider.currentWeight > best.currentWeight) {
+                best = provider;
+            }
+        }
+        if (best == null) {
+            // Everything left is ejected; fail open to the one whose cooldown ends first
+            for (Provider provider : providers) {
+                if (!exclude.contains(provider) && (best == null || provider.ejectedUntil < best.ejectedUntil)) {
+                    best = provider;
+                }
+            }
+            return best;
+        }
+        best.currentWeight -= total;
+        return best;
+    }
+
+    private synchronized void record(Provider provider, boolean success) {
+        long now = System.nanoTime();
+        if (now - provider.windowStart > windowNanos) {
+            provider.windowStart = now;
+            provider.windowRequests = 0;
+            provider.windowFailures = 0;
+        }
+        provider.windowRequests++;
+        (success ? provider.sent : provider.failed).increment();
+        if (success) {
+            if (provider.ejectedUntil != 0 && now >= provider.ejectedUntil) {
+                // Recovered after a cooldown
+                provider.ejectedUntil = 0;
+                provider.ejections = 0;
+            }
+            return;
+        }
+        provider.windowFailures++;
+        boolean tripped = provider.windowRequests >= minRequests
+                && (double) provider.windowFailures / provider.windowRequests >= errorRateThreshold;
+        // A provider just back from a cooldown is ejected again on its first failure
+        boolean probeFailed = provider.ejections > 0 && now >= provider.ejectedUntil;
+        if (tripped || probeFailed) {
+            long cooldown = ejectionNanos << Math.min(provider.ejections, 6);
+            provider.ejectedUntil = now + cooldown;
+            provider.ejections++;
+            provider.ejectionCount.incrementAndGet();
+            provider.windowStart = now;
+            provider.windowRequests = 0;
+            provider.windowFailures = 0;
+            log.warn("Ejecting mail provider {} for {}s after repeated send failures",
+                    provider.name, TimeUnit.NANOSECONDS.toSeconds(cooldown));
+        }
+    }
+
+    private boolean isProviderFailure(MailException e) {
+        return !MailFailures.isMessageFailure(e);
+    }
+
+    public static class Provider {
+
+        private final String name;
+        private final int weight;
+        private final JavaMailSender sender;
+        private final AtomicLong ejectionCount = new AtomicLong();
+        // Guarded by the RoutingMailSender monitor
+        private int currentWeight;
+        private long windowStart = System.nanoTime();
+        private int windowRequests;
+        private int windowFailures;
+        private volatile long ejectedUntil;
+        private int ejections;
+        private Counter sent;
+        private Counter failed;
+        private Counter failovers;
+
+        public Provider(String name, int weight, JavaMailSender sender) {
+            this.name = name;
+            this.weight = Math.max(1, weight);
+            this.sender = sender;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public JavaMailSender getSender() {
+            return sender;
+        }
+
+        public boolean isAvailable(long nowNanos) {
+            return ejectedUntil == 0 || nowNanos >= ejectedUntil;
+        }
+
+        public long getEjectionCount() {
+            return ejectionCount.get();
+        }
+
+        private void register(MeterRegistry meterRegistry) {
+            sent = Counter.builder("mail.routing.sends").tag("provider", name).tag("outcome", "success")
+                    .description("Sends attempted on the provider").register(meterRegistry);
+            failed = Counter.builder("mail.routing.sends").tag("provider", name).tag("outcome", "failure")
+                    .description("Sends attempted on the provider").register(meterRegistry);
+            failovers = Counter.builder("mail.routing.failovers").tag("provider", name)
+                    .description("Sends moved to another provider after failing on this one").register(meterRegistry);
+            Gauge.builder("mail.routing.available", this, provider -> provider.isAvailable(System.nanoTime()) ? 1 : 0)
+                    .tag("provider", name)
+                    .description("1 while the provider is in rotation, 0 while ejected")
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.javacodeex.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Task reminders delivered at a requested time. Pending reminders live in a
+// hierarchical timing wheel (O(1) schedule and cancel) and in an append-only
+// journal that is replayed and compacted at startup, so they survive restarts.
+// Due reminders are released at most release-batch-size per tick, which spreads
+// a top-of-the-hour burst over the following ticks instead of one spike.
+// Delivery is at-least-once: a reminder sent just before a crash may be sent again.
+// A reminder is journalled as delivered only once the send succeeds; a failed send
+// goes back on the wheel with exponential backoff. Only a failure caused by the
+// message itself (MailFailures.isMessageFailure) ends its retries.
+@Slf4j
+@Service
+public class ScheduledEmailService {
+
+    private static final char SCHEDULED = 'S';
+    private static final char CANCELLED = 'C';
+    private static final char DELIVERED = 'D';
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${reminders.tick-millis:100}")
+    private long tickMillis;
+
+    @Value("${reminders.release-batch-size:50}")
+    private int releaseBatchSize;
+
+    @Value("${reminders.journal.path:${java.io.tmpdir}/vsb-reminders.journal}")
+    private String journalPath;
+
+    @Value("${reminders.journal.fsync:false}")
+    private boolean fsync;
+
+    // Compact once the journal has this many records and live entries are under a quarter of them
+    @Value("${reminders.journal.compact-threshold:100000}")
+    private long compactThreshold;
+
+    // Backoff before retrying a failed send, doubled per attempt up to max-backoff
+    @Value("${reminders.retry.initial-backoff:60000}")
+    private long initialBackoffMillis;
+
+    @Value("${reminders.retry.max-backoff:3600000}")
+    private long maxBackoffMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Object lock = new Object();
+    // Guarded by lock
+    private final Map<String, Pending> pending = new HashMap<>();
+    private final ArrayDeque<Pending> ready = new ArrayDeque<>();
+    private HierarchicalTimingWheel<Pending> wheel;
+    // Released to the sender but not yet journalled as delivered; kept through compaction
+    private final Map<String, ScheduledReminder> sending = new ConcurrentHashMap<>();
+
+    private final Object journalLock = new Object();
+    private FileOutputStream journalStream;
+    private BufferedWriter journal;
+    private long journalRecords;
+
+    private Thread ticker;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        wheel = new HierarchicalTimingWheel<>(tickMillis, 8, 4, System.currentTimeMillis());
+        List<ScheduledReminder> replayed = replayJournal();
+        synchronized (lock) {
+            for (ScheduledReminder reminder : replayed) {
+                Pending entry = new Pending(reminder);
+                entry.timeout = wheel.add(reminder.getDeliverAt(), entry);
+                pending.put(reminder.getId(), entry);
+            }
+        }
+        Gauge.builder("reminders.pending", this, service -> service.getPendingCount())
+                .description("Scheduled reminders not yet released")
+                .register(meterRegistry);
+        Gauge.builder("reminders.ready", this, service -> service.getReadyCount())
+                .description("Due reminders waiting for a release batch")
+                .register(meterRegistry);
+
+        running = true;
+        ticker = new Thread(this::tick, "reminder-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
+        log.info("Scheduled reminders restored from journal: {}", replayed.size());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        ticker.interrupt();
+        ticker.join(5000);
+        synchronized (journalLock) {
+            journal.close();
+        }
+    }
+
+    // Schedule a task reminder; returns the id used to cancel it
+    public String scheduleTaskReminder(ScheduledReminder reminder) throws IOException {
+        reminder.setId(UUID.randomUUID().toString());
+        String record = objectMapper.writeValueAsString(reminder);
+        // Journal and wheel change together so a compaction never sees one without the other
+        synchronized (journalLock) {
+            append(SCHEDULED, record);
+            synchronized (lock) {
+                Pending entry = new Pending(reminder);
+                entry.timeout = wheel.add(reminder.getDeliverAt(), entry);
+                pending.put(reminder.getId(), entry);
+            }
+        }
+        maybeCompact();
+        return reminder.getId();
+    }
+
+    // Cancel a reminder that has not been handed to the sender yet
+    public boolean cancel(String id) throws IOException {
+        synchronized (journalLock) {
+            synchronized (lock) {
+                Pending entry = pending.remove(id);
+                if (entry == null) {
+                    return false;
+                }
+                if (!wheel.cancel(entry.timeout)) {
+                    // Already due and waiting in the ready queue; skip it on release
+                    entry.cancelled = true;
+                }
+            }
+            append(CANCELLED, id);
+        }
+        maybeCompact();
+        return true;
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public int getReadyCount() {
+        synchronized (lock) {
+            return ready.size();
+        }
+    }
+
+    private void tick() {
+        List<Pending> batch = new ArrayList<>(releaseBatchSize);
+        while (running) {
+            synchronized (lock) {
+                wheel.advance(System.currentTimeMillis(), ready::addLast);
+                while (batch.size() < releaseBatchSize && !ready.isEmpty()) {
+                    Pending entry = ready.pollFirst();
+                    if (!entry.cancelled) {
+                        pending.remove(entry.reminder.getId());
+                        sending.put(entry.reminder.getId(), entry.reminder);
+                        batch.add(entry);
+                    }
+                }
+            }
+            for (Pending entry : batch) {
+                release(entry);
+            }
+            batch.clear();
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void release(Pending entry) {
+        ScheduledReminder reminder = entry.reminder;
+        try {
+            emailService.queueTaskReminderEmail(reminder.getTo(), reminder.getTaskTitle(), reminder.getDate(),
+                    reminder.getTime(), reminder.getLocation(), reminder.getDescription())
+                    .whenComplete((sent, error) -> {
+                        if (error == null) {
+                            delivered(reminder);
+                        } else {
+                            failed(entry, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                        }
+                    });
+        } catch (MessagingException | RuntimeException e) {
+            failed(entry, e);
+        }
+    }
+
+    // Back on the wheel with backoff; its SCHEDULED record stays in the journal, so a restart retries it too
+    private void failed(Pending entry, Throwable error) {
+        ScheduledReminder reminder = entry.reminder;
+        if (MailFailures.isMessageFailure(error)) {
+            log.error("Giving up on scheduled reminder {}: {}", reminder.getId(), error.getMessage());
+            delivered(reminder);
+            return;
+        }
+        int attempts = entry.attempts + 1;
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts - 1, 30));
+        log.warn("Failed to send scheduled reminder {} (attempt {}), retrying in {}ms: {}",
+                reminder.getId(), attempts, backoff, error.getMessage());
+        // Under journalLock so a compaction sees the reminder either sending or pending
+        synchronized (journalLock) {
+            synchronized (lock) {
+                sending.remove(reminder.getId());
+                Pending retry = new Pending(reminder);
+                retry.attempts = attempts;
+                retry.timeout = wheel.add(System.currentTimeMillis() + backoff, retry);
+                pending.put(reminder.getId(), retry);
+            }
+        }
+    }
+
+    private void delivered(ScheduledReminder reminder) {
+        try {
+            synchronized (journalLock) {
+                append(DELIVERED, reminder.getId());
+                sending.remove(reminder.getId());
+            }
+        } catch (IOException e) {
+            log.error("Failed to journal delivered reminder {}: {}", reminder.getId(), e.getMessage());
+        }
+    }
+
+    // Caller holds journalLock
+    private void append(char type, String data) throws IOException {
+        journal.write(type);
+        journal.write(' ');
+        journal.write(data);
+        journal.newLine();
+        journal.flush();
+        if (fsync) {
+            journalStream.getChannel().force(false);
+        }
+        journalRecords++;
+    }
+
+    // Rewrite the journal once cancelled and delivered records dominate it
+    private void maybeCompact() throws IOException {
+        synchronized (journalLock) {
+            if (journalRecords > compactThreshold && journalRecords > 4L * (getPendingCount() + sending.size())) {
+                compactJournal();
+            }
+        }
+    }
+
+    // Rebuild the pending set from the journal and rewrite it with only the live entries
+    private List<ScheduledReminder> replayJournal() throws IOException {
+        Path path = Paths.get(journalPath);
+        Map<String, ScheduledReminder> live = new LinkedHashMap<>();
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() < 3) {
+                        continue;
+                    }
+                    String data = line.substring(2);
+                    try {
+                        if (line.charAt(0) == SCHEDULED) {
+                            ScheduledReminder reminder = objectMapper.readValue(data, ScheduledReminder.class);
+                            live.put(reminder.getId(), reminder);
+                        } else {
+                            live.remove(data);
+                        }
+                    } catch (IOException e) {
+                        // A torn last line from a crash mid-write
+                        log.warn("Skipping unreadable reminder journal entry: {}", e.getMessage());
+                    }
+                }
+            }
+        } else if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        List<ScheduledReminder> reminders = new ArrayList<>(live.values());
+        synchronized (journalLock) {
+            rewriteJournal(path, reminders);
+        }
+        return reminders;
+    }
+
+    // Caller holds journalLock
+    private void compactJournal() throws IOException {
+        List<ScheduledReminder> reminders = new ArrayList<>(sending.values());
+        synchronized (lock) {
+            for (Pending entry : pending.values()) {
+                reminders.add(entry.reminder);
+            }
+        }
+        journal.close();
+        rewriteJournal(Paths.get(journalPath), reminders);
+    }
+
+    // Caller holds journalLock
+    private void rewriteJournal(Path path, List<ScheduledReminder> reminders) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (ScheduledReminder reminder : reminders) {
+                writer.write(SCHEDULED);
+                writer.write(' ');
+                writer.write(objectMapper.writeValueAsString(reminder));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journalStream = new FileOutputStream(path.toFile(), true);
+        journal = new BufferedWriter(new OutputStreamWriter(journalStream, StandardCharsets.UTF_8));
+        journalRecords = reminders.size();
+    }
+
+    private static class Pending {
+
+        private final ScheduledReminder reminder;
+        private HierarchicalTimingWheel.Timeout<Pending> timeout;
+        private boolean cancelled;
+        // Failed sends so far
+        private int attempts;
+
+        Pending(ScheduledReminder reminder) {
+            this.reminder = reminder;
+        }
+    }
+
+    public static class ScheduledReminder {
+        private String id;
+        private String to;
+        private String taskTitle;
+        private String date;
+        private String time;
+        private String location;
+        private String description;
+        private long deliverAt;
+
+        // Getters and Setters
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public String getTo() { return to; }
+        public void setTo(String to) { this.to = to; }
+        public String getTaskTitle() { return taskTitle; }
+        public void setTaskTitle(String taskTitle) { this.taskTitle = taskTitle; }
+        public String getDate() { return date; }
+        public void setDate(String date) { this.date = date; }
+        public String getTime() { return time; }
+        public void setTime(String time) { this.time = time; }
+        public String getLocation() { return location; }
+        public void setLocation(String location) { this.location = location; }
+        public String getDescription() { return description; }
+        public void setDescription(String description) { this.description = description; }
+        public long getDeliverAt() { return deliverAt; }
+        public void setDeliverAt(long deliverAt) { this.deliverAt = deliverAt; }
+    }
+}
@@ -0,0 +1,140 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Admission control for the send endpoints. A request is admitted while the
+// number of in-flight send requests is below an adaptive limit and the bulk
+// lane is not backed up. The limit follows AIMD on SMTP latency reported by the
+// dispatcher: each fast send adds 1/limit (about +1 per limit's worth of sends)
+// while in-flight requests are near the limit, so an idle limit does not drift
+// up; a send slower than the target or a server failure cuts it by the backoff
+// ratio, at most once per backoff interval so one slow burst does not collapse it
+// to the minimum. Failures of the message itself (e.g. invalid addresses) are ignored.
+@Component
+public class SendAdmissionLimiter {
+
+    @Autowired
+    private MailDispatcher dispatcher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mail.admission.initial-limit:32}")
+    private int initialLimit;
+
+    @Value("${mail.admission.min-limit:4}")
+    private int minLimit;
+
+    @Value("${mail.admission.max-limit:512}")
+    private int maxLimit;
+
+    @Value("${mail.admission.latency-target:1500}")
+    private long latencyTargetMillis;
+
+    @Value("${mail.admission.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    // Fraction of the limit in flight before fast sends may raise it
+    @Value("${mail.admission.increase-utilization:0.8}")
+    private double increaseUtilization;
+
+    @Value("${mail.admission.backoff-interval:1000}")
+    private long backoffIntervalMillis;
+
+    @Value("${mail.admission.max-queue-depth:8000}")
+    private int maxQueueDepth;
+
+    @Value("${mail.admission.retry-after:2}")
+    private int retryAfterSeconds;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastBackoffNanos = new AtomicLong(System.nanoTime());
+    private volatile double limit;
+    private Counter rejectedByLimit;
+    private Counter rejectedByQueue;
+
+    @PostConstruct
+    public void start() {
+        limit = initialLimit;
+        dispatcher.addSendListener(this::onSend);
+        Gauge.builder("mail.admission.limit", this, SendAdmissionLimiter::getLimit)
+                .description("Current adaptive limit on concurrent send requests")
+                .register(meterRegistry);
+        Gauge.builder("mail.admission.in-flight", inFlight, AtomicInteger::get)
+                .description("Send requests currently admitted")
+                .register(meterRegistry);
+        rejectedByLimit = Counter.builder("mail.admission.rejected")
+                .description("Send requests rejected with 429")
+                .tag("reason", "limit")
+                .register(meterRegistry);
+        rejectedByQueue = Counter.builder("mail.admission.rejected")
+                .description("Send requests rejected with 429")
+                .tag("reason", "queue")
+                .register(meterRegistry);
+    }
+
+    // Admit a request; every successful call must be paired with release()
+    public boolean tryAcquire() {
+        if (dispatcher.getQueueDepth(MailDispatcher.Lane.BULK) >= maxQueueDepth) {
+            rejectedByQueue.increment();
+            return false;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejectedByLimit.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    void onSend(long elapsedNanos, RuntimeException failure) {
+        if (failure != null && MailFailures.isMessageFailure(failure)) {
+            return;
+        }
+        if (failure == null && elapsedNanos <= TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis)) {
+            if (inFlight.get() >= limit * increaseUtilization) {
+                synchronized (this) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastBackoffNanos.get();
+        if (now - last >= TimeUnit.MILLISECONDS.toNanos(backoffIntervalMillis) && lastBackoffNanos.compareAndSet(last, now)) {
+            synchronized (this) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.javacodeex.service;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+// Weighted fair queue keyed by tenant. Each item gets a virtual finish time of
+// max(now, tenant's previous finish) + 1/weight, and the item with the smallest
+// finish time is served next, so a tenant with weight 2 gets twice the share of
+// a tenant with weight 1 while both are backlogged, and an idle tenant does not
+// bank credit. A tenant's queue is dropped once it drains, so only backlogged
+// tenants hold state. Per-tenant quotas and a total capacity make put() block
+// instead of letting one tenant fill the queue.
+public class WeightedFairQueue<T> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final Map<String, TenantQueue<T>> tenants = new HashMap<>();
+    // Non-empty tenants ordered by the finish time of their head item
+    private final PriorityQueue<TenantQueue<T>> active =
+            new PriorityQueue<>((a, b) -> Double.compare(a.headFinish(), b.headFinish()));
+
+    private final ToIntFunction<String> weights;
+    private final int tenantQuota;
+    private final int capacity;
+    private double virtualTime;
+    private int size;
+
+    public WeightedFairQueue(ToIntFunction<String> weights, int tenantQuota, int capacity) {
+        this.weights = weights;
+        this.tenantQuota = tenantQuota;
+        this.capacity = capacity;
+    }
+
+    // Blocks while the tenant is at its quota or the queue is at capacity
+    public void put(String tenant, T item) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            TenantQueue<T> queue;
+            while (true) {
+                // Looked up again after every wait: the tenant's queue is dropped whenever it drains
+                queue = tenants.get(tenant);
+                if ((queue == null || queue.items.size() < tenantQuota) && size < capacity) {
+                    break;
+                }
+                notFull.await();
+            }
+            if (queue == null) {
+                queue = new TenantQueue<>(tenant, Math.max(1, weights.applyAsInt(tenant)));
+                tenants.put(tenant, queue);
+            }
+            double finish = Math.max(virtualTime, queue.lastFinish) + 1.0 / queue.weight;
+            queue.lastFinish = finish;
+            boolean wasEmpty = queue.items.isEmpty();
+            queue.items.addLast(new Entry<>(item, finish));
+            if (wasEmpty) {
+                active.add(queue);
+            }
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public T poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public T take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            T item;
+            while ((item = dequeue()) == null) {
+                notEmpty.await();
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            T item;
+            while ((item = dequeue()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size(String tenant) {
+        lock.lock();
+        try {
+            TenantQueue<T> queue = tenants.get(tenant);
+            return queue != null ? queue.items.size() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Tenants with queued items
+    public int tenantCount() {
+        lock.lock();
+        try {
+            return tenants.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private T dequeue() {
+        TenantQueue<T> queue = active.poll();
+        if (queue == null) {
+            return null;
+        }
+        Entry<T> entry = queue.items.removeFirst();
+        virtualTime = Math.max(virtualTime, entry.finish - 1.0 / queue.weight);
+        if (!queue.items.isEmpty()) {
+            active.add(queue);
+        } else {
+            // Idle tenants keep no state, so the map only holds tenants with queued items
+            tenants.remove(queue.tenant, queue);
+        }
+        size--;
+        notFull.signalAll();
+        return entry.item;
+    }
+
+    private static class TenantQueue<T> {
+
+        private final String tenant;
+        private final int weight;
+        private final ArrayDeque<Entry<T>> items = new ArrayDeque<>();
+        private double lastFinish;
+
+        TenantQueue(String tenant, int weight) {
+            this.tenant = tenant;
+            this.weight = weight;
+        }
+
+        double headFinish() {
+            return items.peekFirst().finish;
+        }
+    }
+
+    private static class Entry<T> {
+
+        private final T item;
+        private final double finish;
+
+        Entry(T item, double finish) {
+            this.item = item;
+            this.finish = finish;
+        }
+    }
+}
@@ -3,7 +3,8 @@ package com.javacodeex;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// No SMTP server here; the warm-up must not try to reach the configured one
+@SpringBootTest(properties = "mail.warmup.connect=false")
 class SpringBootMailApplicationTests {
 
 	@Test
@@ -0,0 +1,174 @@
+package com.javacodeex.config;
+
+import com.javacodeex.service.IdempotencyCache;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyFilterTests {
+
+    private static final String BODY = "{\"to\":\"ana@example.com\",\"subject\":\"Hi\"}";
+
+    private IdempotencyCache cache;
+    private IdempotencyFilter filter;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cache = new IdempotencyCache();
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60_000L);
+        ReflectionTestUtils.setField(cache, "bucketCount", 4);
+        ReflectionTestUtils.setField(cache, "persistencePath", "");
+        cache.start();
+
+        filter = new IdempotencyFilter();
+        ReflectionTestUtils.setField(filter, "cache", cache);
+        ReflectionTestUtils.setField(filter, "paths", List.of("/send-*"));
+        ReflectionTestUtils.setField(filter, "waitTimeoutMillis", 5000L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        cache.stop();
+    }
+
+    @Test
+    void retryWithTheSameKeyAndBodyIsReplayed() throws Exception {
+        MockHttpServletResponse first = send("key-1", BODY, echo(200));
+        MockHttpServletResponse retry = send("key-1", BODY, echo(200));
+
+        assertThat(executions).hasValue(1);
+        assertThat(first.getContentAsString()).isEqualTo("sent " + BODY);
+        assertThat(retry.getStatus()).isEqualTo(200);
+        assertThat(retry.getContentAsString()).isEqualTo("sent " + BODY);
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void reusingAKeyWithADifferentBodyIsRejected() throws Exception {
+        send("key-1", BODY, echo(200));
+        MockHttpServletResponse reused = send("key-1", "{\"to\":\"ben@example.com\"}", echo(200));
+
+        assertThat(reused.getStatus()).isEqualTo(422);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void reusingAKeyWithDifferentQueryParametersIsRejected() throws Exception {
+        MockHttpServletResponse first = send("key-1", "to=ana@example.com&subject=Hi", "", echo(200));
+        MockHttpServletResponse reordered = send("key-1", "subject=Hi&to=ana@example.com", "", echo(200));
+        MockHttpServletResponse reused = send("key-1", "to=ben@example.com&subject=Hi", "", echo(200));
+
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(reordered.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(reused.getStatus()).isEqualTo(422);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void concurrentRetryWaitsForTheOriginalAndReplaysIt() throws Exception {
+        CountDownLatch inChain = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<MockHttpServletResponse> original = CompletableFuture.supplyAsync(() -> sendUnchecked("key-1", (req, res) -> {
+            inChain.countDown();
+            await(release);
+            echo(200).doFilter(req, res);
+        }));
+        assertThat(inChain.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AtomicReference<MockHttpServletResponse> replayed = new AtomicReference<>();
+        Thread waiter = new Thread(() -> replayed.set(sendUnchecked("key-1", echo(200))));
+        waiter.start();
+        // Parked in the timed wait for the original's result
+        while (waiter.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        waiter.join(5000);
+
+        assertThat(original.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        assertThat(executions).hasValue(1);
+        assertThat(replayed.get().getContentAsString()).isEqualTo("sent " + BODY);
+        assertThat(replayed.get().getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void serverErrorIsNotRememberedAndAWaitingRetryRunsAgain() throws Exception {
+        CountDownLatch inChain = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<MockHttpServletResponse> original = CompletableFuture.supplyAsync(() -> sendUnchecked("key-1", (req, res) -> {
+            inChain.countDown();
+            await(release);
+            echo(503).doFilter(req, res);
+        }));
+        assertThat(inChain.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<MockHttpServletResponse> waiting = CompletableFuture.supplyAsync(() -> sendUnchecked("key-1", echo(200)));
+        release.countDown();
+
+        assertThat(original.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(503);
+        MockHttpServletResponse retried = waiting.get(5, TimeUnit.SECONDS);
+        assertThat(retried.getStatus()).isEqualTo(200);
+        assertThat(retried.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+        assertThat(executions).hasValue(2);
+        assertThat(send("key-1", BODY, echo(200)).getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    // A controller stand-in: counts executions and answers with the body it read
+    private FilterChain echo(int status) {
+        return (req, res) -> {
+            executions.incrementAndGet();
+            String body = new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setStatus(status);
+            response.setContentType("text/plain");
+            response.getWriter().write("sent " + body);
+        };
+    }
+
+    private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+        return send(key, null, body, chain);
+    }
+
+    private MockHttpServletResponse send(String key, String query, String body, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/send-email");
+        request.setServletPath("/send-email");
+        request.setQueryString(query);
+        request.addHeader(IdempotencyFilter.HEADER, key);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private MockHttpServletResponse sendUnchecked(String key, FilterChain chain) {
+        try {
+            return send(key, BODY, chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.javacodeex.config;
+
+import com.google.cloud.Timestamp;
+import com.javacodeex.model.Notification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Serialization cost per notification frame for each encoding. Not a unit test
+// (surefire skips it); run its main() on the test classpath like MessageTemplateBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationFrameCodecBenchmark {
+
+    @Param({"JSON", "CBOR", "CBOR_ELIDED"})
+    public NotificationFrameCodec.Format format;
+
+    private final NotificationFrameCodec codec = new NotificationFrameCodec();
+    private Notification notification;
+
+    @Setup
+    public void setUp() {
+        notification = new Notification("volunteer", "Volunteer 42 is applied for Tree Planting Initiative",
+                false, Timestamp.now(), "organization42@example.com");
+        notification.setId("n-42");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(notification, format);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NotificationFrameCodecBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,73 @@
+package com.javacodeex.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.google.cloud.Timestamp;
+import com.javacodeex.model.Notification;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Bytes per frame of the compact encodings against today's JSON; the CPU cost
+// is measured by NotificationFrameCodecBenchmark.
+class NotificationFrameCodecTests {
+
+    private final NotificationFrameCodec codec = new NotificationFrameCodec();
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    @Test
+    void elidedCborDropsTopicImpliedFieldsAndFlattensTimestamp() throws Exception {
+        Notification notification = sample(0);
+
+        JsonNode frame = cborMapper.readTree(codec.encode(notification, NotificationFrameCodec.Format.CBOR_ELIDED));
+
+        assertThat(frame.has("email")).isFalse();
+        assertThat(frame.path("i").asText()).isEqualTo("n-0");
+        assertThat(frame.path("c").asText()).isEqualTo(notification.getContent());
+        assertThat(frame.path("ts").asLong()).isEqualTo(notification.getTimestamp().toDate().getTime());
+    }
+
+    @Test
+    void relayModeEncodesFromJsonBytes() throws Exception {
+        Notification notification = sample(0);
+        byte[] json = codec.encode(notification, NotificationFrameCodec.Format.JSON);
+
+        byte[] fromSource = codec.encode(notification, NotificationFrameCodec.Format.CBOR_ELIDED);
+        byte[] fromJson = codec.encode(null, json, NotificationFrameCodec.Format.CBOR_ELIDED);
+
+        assertThat(cborMapper.readTree(fromJson)).isEqualTo(cborMapper.readTree(fromSource));
+    }
+
+    @Test
+    void compactEncodingsAreSmaller() throws Exception {
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            notifications.add(sample(i));
+        }
+
+        long json = bytesPerFrame(notifications, NotificationFrameCodec.Format.JSON);
+        long cbor = bytesPerFrame(notifications, NotificationFrameCodec.Format.CBOR);
+        long elided = bytesPerFrame(notifications, NotificationFrameCodec.Format.CBOR_ELIDED);
+
+        assertThat(cbor).isLessThan(json);
+        assertThat(elided).isLessThan(cbor);
+    }
+
+    private long bytesPerFrame(List<Notification> notifications, NotificationFrameCodec.Format format) throws Exception {
+        long bytes = 0;
+        for (Notification notification : notifications) {
+            bytes += codec.encode(notification, format).length;
+        }
+        return bytes / notifications.size();
+    }
+
+    private Notification sample(int i) {
+        Notification notification = new Notification("volunteer", "Volunteer " + i + " is applied for Tree Planting Initiative",
+                false, Timestamp.now(), "organization" + i + "@example.com");
+        notification.setId("n-" + i);
+        return notification;
+    }
+}
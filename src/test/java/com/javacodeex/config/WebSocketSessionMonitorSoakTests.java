@@ -0,0 +1,156 @@
+package com.javacodeex.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Simulates 10k STOMP connections, 1% of which never drain their outbound queue,
+// and checks that memory per connection stays within the adaptive limit. The
+// 10k-client soak is tagged "benchmark" and only runs with -Pbenchmarks.
+class WebSocketSessionMonitorSoakTests {
+
+    private static final int CLIENTS = 10_000;
+    private static final int SLOW_EVERY = 100;
+    private static final int ROUNDS = 50;
+    private static final int FRAME_BYTES = 1024;
+    private static final long BUDGET = 64L * 1024 * 1024;
+
+    private final Map<String, WebSocketSession> stompSessions = new ConcurrentHashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WebSocketSessionMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        monitor = new WebSocketSessionMonitor();
+        ReflectionTestUtils.setField(monitor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(monitor, "scalingEnabled", true);
+        ReflectionTestUtils.setField(monitor, "messageSizeLimit", 65536);
+        ReflectionTestUtils.setField(monitor, "totalBufferBudget", BUDGET);
+        ReflectionTestUtils.setField(monitor, "minSessionBuffer", 16384);
+        ReflectionTestUtils.setField(monitor, "maxSessionBuffer", 524288);
+        ReflectionTestUtils.setField(monitor, "slowConsumerTimeoutMillis", 5000L);
+        monitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+    }
+
+    @Test
+    void releasesExactlyWhatEachMessageWasCharged() throws Exception {
+        WebSocketHandler handler = handler();
+        WebSocketSession client = mock(WebSocketSession.class);
+        when(client.getId()).thenReturn("client-0");
+        handler.afterConnectionEstablished(client);
+        WebSocketSession session = stompSessions.get("client-0");
+
+        Message<?> small = monitor.preSend(frame("client-0", new byte[100]), null);
+        Message<?> medium = monitor.preSend(frame("client-0", new byte[FRAME_BYTES]), null);
+        Message<?> large = monitor.preSend(frame("client-0", new byte[4 * FRAME_BYTES]), null);
+        assertThat(monitor.getBufferedBytes()).isEqualTo(100 + 5L * FRAME_BYTES);
+
+        // A handler-made ERROR frame was never charged and releases nothing
+        session.sendMessage(new TextMessage("ERROR\nmessage:bad frame\n\n\u0000"));
+        assertThat(monitor.getBufferedBytes()).isEqualTo(100 + 5L * FRAME_BYTES);
+
+        // Outbound threads finish out of order; each releases its own charge
+        monitor.afterMessageHandled(large, null, null, null);
+        assertThat(monitor.getBufferedBytes()).isEqualTo(100 + FRAME_BYTES);
+        monitor.afterMessageHandled(small, null, null, null);
+        assertThat(monitor.getBufferedBytes()).isEqualTo(FRAME_BYTES);
+
+        // A message the channel failed to dispatch is released, and only once
+        monitor.afterSendCompletion(medium, null, false, new IllegalStateException("rejected"));
+        monitor.afterMessageHandled(medium, null, null, null);
+
+        assertThat(monitor.getBufferedBytes()).isZero();
+        assertThat(monitor.getMaxSessionBuffered()).isZero();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void evictsSlowConsumersAndBoundsBufferedBytes() throws Exception {
+        WebSocketHandler handler = handler();
+
+        List<WebSocketSession> clients = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            WebSocketSession client = mock(WebSocketSession.class);
+            when(client.getId()).thenReturn("client-" + i);
+            handler.afterConnectionEstablished(client);
+            clients.add(client);
+        }
+        assertThat(monitor.getActiveSessionCount()).isEqualTo(CLIENTS);
+
+        long peakBuffered = 0;
+        long peakPerSession = 0;
+        byte[] payload = new byte[FRAME_BYTES];
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < CLIENTS; i++) {
+                Message<?> accepted = monitor.preSend(frame("client-" + i, payload), null);
+                if (accepted != null && i % SLOW_EVERY != 0) {
+                    monitor.afterMessageHandled(accepted, null, null, null);
+                }
+            }
+            peakBuffered = Math.max(peakBuffered, monitor.getBufferedBytes());
+            peakPerSession = Math.max(peakPerSession, monitor.getMaxSessionBuffered());
+        }
+
+        // Fast clients have drained to nothing; only what slow clients accepted before eviction is held
+        int slowClients = CLIENTS / SLOW_EVERY;
+        long acceptedPerSlowClient = monitor.getSessionBufferLimit() / FRAME_BYTES * FRAME_BYTES;
+        assertThat(monitor.getBufferedBytes()).isEqualTo(slowClients * acceptedPerSlowClient);
+        for (int i = 0; i < CLIENTS; i += SLOW_EVERY) {
+            verify(clients.get(i)).close(CloseStatus.SESSION_NOT_RELIABLE);
+            handler.afterConnectionClosed(clients.get(i), CloseStatus.SESSION_NOT_RELIABLE);
+        }
+
+        assertThat(meterRegistry.get("websocket.sessions.evicted").tag("reason", "buffer").counter().count())
+                .isEqualTo(slowClients);
+        assertThat(monitor.getActiveSessionCount()).isEqualTo(CLIENTS - slowClients);
+        assertThat(peakPerSession).isLessThanOrEqualTo(monitor.getSessionBufferLimit());
+        assertThat(peakBuffered).isLessThanOrEqualTo(BUDGET);
+        assertThat(monitor.getBufferedBytes()).isZero();
+
+        System.out.printf("soak: %d clients, %d evicted, peak buffered %d bytes (%.1f bytes/connection)%n",
+                CLIENTS, slowClients, peakBuffered, (double) peakBuffered / CLIENTS);
+    }
+
+    private WebSocketHandler handler() {
+        return monitor.decorate(new AbstractWebSocketHandler() {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) {
+                stompSessions.put(session.getId(), session);
+            }
+        });
+    }
+
+    private Message<byte[]> frame(String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/notifications/org@example.com");
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,77 @@
+package com.javacodeex.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebsocketConfigurationTests {
+
+    private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+            .withUserConfiguration(WebsocketConfiguration.class, WebSocketSessionMonitor.class,
+                    NotificationEncodingInterceptor.class, NotificationFrameCodec.class)
+            .withBean(MeterRegistry.class, SimpleMeterRegistry::new);
+
+    @Test
+    void simpleModeUsesTheInProcessBroker() {
+        contextRunner.run(context -> {
+            assertThat(context).hasSingleBean(SimpleBrokerMessageHandler.class);
+            assertThat(context.getBean("stompBrokerRelayMessageHandler")).isNotInstanceOf(StompBrokerRelayMessageHandler.class);
+        });
+    }
+
+    @Test
+    void relayModeRegistersTheRelayWithConfiguredHostAndCredentials() {
+        contextRunner
+                .withPropertyValues(
+                        "websocket.broker.mode=relay",
+                        "websocket.broker.relay.host=127.0.0.1",
+                        "websocket.broker.relay.port=61699",
+                        "websocket.broker.relay.virtual-host=notifications",
+                        "websocket.broker.relay.client-login=app-client",
+                        "websocket.broker.relay.client-passcode=client-secret",
+                        "websocket.broker.relay.system-login=app-system",
+                        "websocket.broker.relay.system-passcode=system-secret")
+                .run(context -> {
+                    assertThat(context).hasNotFailed();
+                    assertThat(context).doesNotHaveBean(SimpleBrokerMessageHandler.class);
+                    StompBrokerRelayMessageHandler relay = context.getBean(StompBrokerRelayMessageHandler.class);
+                    assertThat(relay.getRelayHost()).isEqualTo("127.0.0.1");
+                    assertThat(relay.getRelayPort()).isEqualTo(61699);
+                    assertThat(relay.getVirtualHost()).isEqualTo("notifications");
+                    assertThat(relay.getClientLogin()).isEqualTo("app-client");
+                    assertThat(relay.getClientPasscode()).isEqualTo("client-secret");
+                    assertThat(relay.getSystemLogin()).isEqualTo("app-system");
+                    assertThat(relay.getSystemPasscode()).isEqualTo("system-secret");
+                    assertThat(relay.getDestinationPrefixes()).hasSize(3);
+                });
+    }
+
+    @Test
+    void bothModesHandleTheSameDestinations() {
+        contextRunner.run(simple -> contextRunner
+                .withPropertyValues(
+                        "websocket.broker.mode=relay",
+                        "websocket.broker.relay.host=127.0.0.1",
+                        "websocket.broker.relay.port=61699",
+                        "websocket.broker.relay.client-login=app-client",
+                        "websocket.broker.relay.client-passcode=client-secret",
+                        "websocket.broker.relay.system-login=app-system",
+                        "websocket.broker.relay.system-passcode=system-secret")
+                .run(relay -> assertThat(relay.getBean(StompBrokerRelayMessageHandler.class).getDestinationPrefixes())
+                        .containsExactlyInAnyOrderElementsOf(
+                                simple.getBean(SimpleBrokerMessageHandler.class).getDestinationPrefixes())));
+    }
+
+    @Test
+    void relayModeRefusesToStartWithoutCredentials() {
+        contextRunner
+                .withPropertyValues("websocket.broker.mode=relay")
+                .run(context -> assertThat(context).hasFailed()
+                        .getFailure().hasRootCauseInstanceOf(IllegalStateException.class));
+    }
+}
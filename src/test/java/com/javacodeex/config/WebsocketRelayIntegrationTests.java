@@ -0,0 +1,155 @@
+package com.javacodeex.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two nodes relaying to one embedded STOMP broker (Artemis). A client session
+// is simulated on each node through its clientInboundChannel, and what the node
+// would write to the WebSocket is read from its clientOutboundChannel.
+class WebsocketRelayIntegrationTests {
+
+    private static final String DESTINATION = "/topic/notifications/org@example.com";
+
+    @TempDir
+    Path dataDir;
+
+    private EmbeddedActiveMQ broker;
+    private int port;
+
+    @BeforeEach
+    void startBroker() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Configuration configuration = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJournalDirectory(dataDir.resolve("journal").toString())
+                .setBindingsDirectory(dataDir.resolve("bindings").toString())
+                .setPagingDirectory(dataDir.resolve("paging").toString())
+                .setLargeMessagesDirectory(dataDir.resolve("large-messages").toString())
+                .addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + port
+                        + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        broker.start();
+    }
+
+    @AfterEach
+    void stopBroker() throws Exception {
+        broker.stop();
+    }
+
+    @Test
+    void everySubscriberOnEveryNodeGetsEachNotificationOnce() {
+        WebApplicationContextRunner node = new WebApplicationContextRunner()
+                .withUserConfiguration(WebsocketConfiguration.class, WebSocketSessionMonitor.class,
+                        NotificationEncodingInterceptor.class, NotificationFrameCodec.class)
+                .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+                .withPropertyValues(
+                        "websocket.broker.mode=relay",
+                        "websocket.broker.relay.host=127.0.0.1",
+                        "websocket.broker.relay.port=" + port,
+                        "websocket.broker.relay.client-login=app-client",
+                        "websocket.broker.relay.client-passcode=client-secret",
+                        "websocket.broker.relay.system-login=app-system",
+                        "websocket.broker.relay.system-passcode=system-secret");
+
+        node.run(first -> node.run(second -> {
+            Map<String, List<String>> received = new ConcurrentHashMap<>();
+            subscribe(first, "first-session", received);
+            subscribe(second, "second-session", received);
+
+            SimpMessagingTemplate publisher = first.getBean("brokerMessagingTemplate", SimpMessagingTemplate.class);
+            publisher.convertAndSend(DESTINATION, "n1");
+            publisher.convertAndSend(DESTINATION, "n2");
+
+            await(() -> received.get("first-session").size() >= 2 && received.get("second-session").size() >= 2);
+            // Give a duplicate time to show up
+            Thread.sleep(300);
+            assertThat(received.get("first-session")).containsExactly("n1", "n2");
+            assertThat(received.get("second-session")).containsExactly("n1", "n2");
+        }));
+    }
+
+    // CONNECT, wait for CONNECTED, then SUBSCRIBE and wait for the broker's receipt
+    private void subscribe(ApplicationContext context, String sessionId, Map<String, List<String>> received) {
+        StompBrokerRelayMessageHandler relay = context.getBean(StompBrokerRelayMessageHandler.class);
+        await(relay::isBrokerAvailable);
+
+        List<String> messages = new CopyOnWriteArrayList<>();
+        received.put(sessionId, messages);
+        List<StompCommand> frames = new CopyOnWriteArrayList<>();
+        context.getBean("clientOutboundChannel", SubscribableChannel.class).subscribe(message -> {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+            if (!sessionId.equals(accessor.getSessionId())) {
+                return;
+            }
+            frames.add(accessor.getCommand());
+            if (accessor.getCommand() == StompCommand.MESSAGE) {
+                messages.add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+            }
+        });
+        MessageChannel inbound = context.getBean("clientInboundChannel", MessageChannel.class);
+
+        StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+        connect.setSessionId(sessionId);
+        connect.setAcceptVersion("1.2");
+        connect.setHeartbeat(0, 0);
+        inbound.send(frame(connect));
+        await(() -> frames.contains(StompCommand.CONNECTED));
+
+        StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        subscribe.setSessionId(sessionId);
+        subscribe.setSubscriptionId("sub-0");
+        subscribe.setDestination(DESTINATION);
+        subscribe.setReceipt("subscribed");
+        inbound.send(frame(subscribe));
+        await(() -> frames.contains(StompCommand.RECEIPT));
+    }
+
+    private static Message<byte[]> frame(StompHeaderAccessor accessor) {
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("Timed out waiting").isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
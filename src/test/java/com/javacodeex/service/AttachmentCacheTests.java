@@ -0,0 +1,300 @@
+package com.javacodeex.service;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import jakarta.mail.BodyPart;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AttachmentCacheTests {
+
+    private static final String BUCKET = "bucket";
+
+    @TempDir
+    Path cacheDir;
+
+    // Stand-in bucket: key -> (etag, content)
+    private final Map<String, StoredObject> bucket = new ConcurrentHashMap<>();
+    private final AmazonS3 s3 = mock(AmazonS3.class);
+
+    @BeforeEach
+    void setUp() {
+        when(s3.getObjectMetadata(anyString(), anyString())).thenAnswer(invocation -> {
+            StoredObject stored = bucket.get(invocation.<String>getArgument(1));
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setHeader("ETag", "\"" + stored.etag + "\"");
+            return metadata;
+        });
+        when(s3.getObject(anyString(), anyString())).thenAnswer(invocation -> {
+            StoredObject stored = bucket.get(invocation.<String>getArgument(1));
+            S3Object object = new S3Object();
+            object.setKey(invocation.getArgument(1));
+            object.getObjectMetadata().setHeader("ETag", "\"" + stored.etag + "\"");
+            object.setObjectContent(new ByteArrayInputStream(stored.content));
+            return object;
+        });
+    }
+
+    @Test
+    void downloadsAnAttachmentToDisk() throws Exception {
+        put("attachments/report.pdf", "etag1", "report body");
+        AttachmentCache cache = cache(1024, 60000);
+
+        try (AttachmentCache.Leases leases = cache.acquire(List.of(ref("attachments/report.pdf")))) {
+            AttachmentCache.Lease lease = leases.getLeases().get(0);
+            assertThat(Files.readString(lease.getPath())).isEqualTo("report body");
+            assertThat(lease.getFilename()).isEqualTo("report.pdf");
+        }
+        assertThat(cache.getTotalBytes()).isEqualTo("report body".length());
+    }
+
+    @Test
+    void rejectsKeysOutsideTheAttachmentsPrefix() throws Exception {
+        AttachmentCache cache = cache(1024, 60000);
+
+        for (String key : List.of("archive/notifications/2024/01/01/abc.ndjson.gz", "attachments/../archive/x",
+                "attachments/", "attachmentsx/file")) {
+            assertThatThrownBy(() -> cache.acquire(List.of(ref(key))))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        verify(s3, never()).getObjectMetadata(anyString(), anyString());
+        verify(s3, never()).getObject(anyString(), anyString());
+    }
+
+    @Test
+    void revalidatesByEtagAndDownloadsAgainOnlyWhenItChanged() throws Exception {
+        put("attachments/a.txt", "etag1", "first");
+        AttachmentCache cache = cache(1024, 0);
+
+        acquireAndClose(cache, "attachments/a.txt");
+        acquireAndClose(cache, "attachments/a.txt");
+        verify(s3, times(2)).getObjectMetadata(BUCKET, "attachments/a.txt");
+        verify(s3, times(1)).getObject(BUCKET, "attachments/a.txt");
+
+        put("attachments/a.txt", "etag2", "second");
+        try (AttachmentCache.Leases leases = cache.acquire(List.of(ref("attachments/a.txt")))) {
+            assertThat(Files.readString(leases.getLeases().get(0).getPath())).isEqualTo("second");
+        }
+        verify(s3, times(2)).getObject(BUCKET, "attachments/a.txt");
+    }
+
+    @Test
+    void skipsTheHeadRequestWithinTheMetadataTtl() throws Exception {
+        put("attachments/a.txt", "etag1", "first");
+        AttachmentCache cache = cache(1024, 60000);
+
+        acquireAndClose(cache, "attachments/a.txt");
+        acquireAndClose(cache, "attachments/a.txt");
+
+        // Only the first acquire asks S3 for the etag
+        verify(s3, times(1)).getObjectMetadata(BUCKET, "attachments/a.txt");
+        verify(s3, times(1)).getObject(BUCKET, "attachments/a.txt");
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedFile() throws Exception {
+        put("attachments/a", "etag-a", "aaaaaaaaaa");
+        put("attachments/b", "etag-b", "bbbbbbbbbb");
+        put("attachments/c", "etag-c", "cccccccccc");
+        AttachmentCache cache = cache(25, 60000);
+
+        Path a = acquireAndClose(cache, "attachments/a");
+        Path b = acquireAndClose(cache, "attachments/b");
+        // Touch "a" so "b" becomes the least recently used
+        acquireAndClose(cache, "attachments/a");
+        Path c = acquireAndClose(cache, "attachments/c");
+
+        assertThat(a).exists();
+        assertThat(b).doesNotExist();
+        assertThat(c).exists();
+        assertThat(cache.getTotalBytes()).isEqualTo(20);
+    }
+
+    @Test
+    void pinnedFilesSurviveEvictionUntilReleased() throws Exception {
+        put("attachments/a", "etag-a", "aaaaaaaaaa");
+        put("attachments/b", "etag-b", "bbbbbbbbbb");
+        AttachmentCache cache = cache(15, 60000);
+
+        try (AttachmentCache.Leases pinned = cache.acquire(List.of(ref("attachments/a")))) {
+            Path a = pinned.getLeases().get(0).getPath();
+            Path b = acquireAndClose(cache, "attachments/b");
+
+            // Over budget: "a" is older but pinned, so the unpinned "b" goes
+            assertThat(a).exists();
+            assertThat(b).doesNotExist();
+            assertThat(Files.readString(a)).isEqualTo("aaaaaaaaaa");
+        }
+        assertThat(cache.getTotalBytes()).isEqualTo(10);
+    }
+
+    @Test
+    void keepsIdenticalContentUnderDifferentKeysOnce() throws Exception {
+        put("attachments/one/logo.png", "etag-1", "same bytes");
+        put("attachments/two/logo.png", "etag-2", "same bytes");
+        AttachmentCache cache = cache(1024, 60000);
+
+        Path first = acquireAndClose(cache, "attachments/one/logo.png");
+        Path second = acquireAndClose(cache, "attachments/two/logo.png");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(cache.getTotalBytes()).isEqualTo("same bytes".length());
+        try (Stream<Path> stream = Files.list(cacheDir)) {
+            assertThat(stream.filter(path -> path.getFileName().toString().startsWith("sha256-"))).hasSize(1);
+        }
+    }
+
+    @Test
+    void reloadsTheEtagIndexFromDiskOnInit() throws Exception {
+        put("attachments/a.txt", "etag1", "persisted");
+        Path downloaded = acquireAndClose(cache(1024, 60000), "attachments/a.txt");
+
+        AttachmentCache restarted = cache(1024, 60000);
+        assertThat(restarted.getTotalBytes()).isEqualTo("persisted".length());
+        Path reused = acquireAndClose(restarted, "attachments/a.txt");
+
+        // The restarted cache only asks for the etag; the content is found through the etag index
+        assertThat(reused).isEqualTo(downloaded);
+        verify(s3, times(2)).getObjectMetadata(BUCKET, "attachments/a.txt");
+        verify(s3, times(1)).getObject(BUCKET, "attachments/a.txt");
+    }
+
+    @Test
+    void boundsTheEncodedCacheInBytes() throws Exception {
+        put("attachments/a", "etag-a", binary(1000, 1));
+        put("attachments/b", "etag-b", binary(1000, 2));
+        put("attachments/c", "etag-c", binary(1000, 3));
+        put("attachments/large", "etag-large", binary(2000, 4));
+        AttachmentCache cache = cache(1024 * 1024, 60000, 3000, 1500);
+
+        long entryBytes = encodedLength(cache, "attachments/a");
+        encodedLength(cache, "attachments/b");
+        assertThat(cache.getTotalEncodedBytes()).isEqualTo(2 * entryBytes);
+        encodedLength(cache, "attachments/c");
+
+        assertThat(cache.getTotalEncodedBytes()).isEqualTo(2 * entryBytes).isLessThanOrEqualTo(3000);
+        try (AttachmentCache.Leases leases = cache.acquire(List.of(ref("attachments/large")))) {
+            assertThat(leases.getLeases().get(0).getEncodedBody()).isNull();
+        }
+        assertThat(cache.getTotalEncodedBytes()).isEqualTo(2 * entryBytes);
+    }
+
+    @Test
+    void preEncodedPartSerializesLikeTheHelperBuiltPart() throws Exception {
+        put("attachments/report.pdf", "etag1", binary(1000, 7));
+        AttachmentCache cache = cache(1024 * 1024, 60000);
+        Session session = Session.getInstance(new Properties());
+
+        try (AttachmentCache.Leases leases = cache.acquire(List.of(ref("attachments/report.pdf")))) {
+            AttachmentCache.Lease lease = leases.getLeases().get(0);
+            assertThat(lease.getEncodedBody()).isNotNull();
+
+            MimeMessageHelper preEncoded = new MimeMessageHelper(new MimeMessage(session), true, "UTF-8");
+            ReflectionTestUtils.invokeMethod(new EmailService(), "addAttachment", preEncoded, lease);
+            MimeMessageHelper streamed = new MimeMessageHelper(new MimeMessage(session), true, "UTF-8");
+            streamed.addAttachment(lease.getFilename(), new FileSystemResource(lease.getPath()));
+
+            assertThat(serializedAttachment(preEncoded)).isEqualTo(serializedAttachment(streamed));
+        }
+    }
+
+    private Path acquireAndClose(AttachmentCache cache, String key) throws Exception {
+        try (AttachmentCache.Leases leases = cache.acquire(List.of(ref(key)))) {
+            return leases.getLeases().get(0).getPath();
+        }
+    }
+
+    private long encodedLength(AttachmentCache cache, String key) throws Exception {
+        try (AttachmentCache.Leases leases = cache.acquire(List.of(ref(key)))) {
+            return leases.getLeases().get(0).getEncodedBody().length;
+        }
+    }
+
+    private static byte[] serializedAttachment(MimeMessageHelper helper) throws Exception {
+        helper.getMimeMessage().saveChanges();
+        BodyPart part = helper.getRootMimeMultipart().getBodyPart(helper.getRootMimeMultipart().getCount() - 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        part.writeTo(out);
+        return out.toByteArray();
+    }
+
+    // Non-ASCII content, so JavaMail picks base64 for it as well
+    private static byte[] binary(int length, int seed) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31 + seed);
+        }
+        return content;
+    }
+
+    private AttachmentCache cache(long maxBytes, long metadataTtlMillis) throws Exception {
+        return cache(maxBytes, metadataTtlMillis, 1024L * 1024, 1024L * 1024);
+    }
+
+    private AttachmentCache cache(long maxBytes, long metadataTtlMillis, long maxEncodedBytes, long maxEncodedEntryBytes)
+            throws Exception {
+        AttachmentCache cache = new AttachmentCache();
+        ReflectionTestUtils.setField(cache, "s3", s3);
+        ReflectionTestUtils.setField(cache, "bucketName", BUCKET);
+        ReflectionTestUtils.setField(cache, "keyPrefix", "attachments/");
+        ReflectionTestUtils.setField(cache, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(cache, "maxBytes", maxBytes);
+        ReflectionTestUtils.setField(cache, "metadataTtlMillis", metadataTtlMillis);
+        ReflectionTestUtils.setField(cache, "maxEncodedBytes", maxEncodedBytes);
+        ReflectionTestUtils.setField(cache, "maxEncodedEntryBytes", maxEncodedEntryBytes);
+        cache.init();
+        return cache;
+    }
+
+    private void put(String key, String etag, String content) {
+        put(key, etag, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void put(String key, String etag, byte[] content) {
+        bucket.put(key, new StoredObject(etag, content));
+    }
+
+    private static EmailService.AttachmentRef ref(String key) {
+        EmailService.AttachmentRef ref = new EmailService.AttachmentRef();
+        ref.setKey(key);
+        return ref;
+    }
+
+    private static class StoredObject {
+
+        private final String etag;
+        private final byte[] content;
+
+        StoredObject(String etag, byte[] content) {
+            this.etag = etag;
+            this.content = content;
+        }
+    }
+}
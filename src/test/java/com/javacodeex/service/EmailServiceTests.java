@@ -0,0 +1,114 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Bulk sends against a local SMTP stand-in, with and without envelope batching.
+class EmailServiceTests {
+
+    private static final int RECIPIENTS = 120;
+    private static final int BATCH_SIZE = 50;
+
+    private FakeSmtpServer server;
+    private MailDispatcher dispatcher;
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSmtpServer(0);
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(server.getPort());
+        mailSender.getJavaMailProperties().put("mail.smtp.from", "noreply@example.com");
+
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        dispatcher = new MailDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "workers", 4);
+        ReflectionTestUtils.setField(dispatcher, "reservedWorkers", 1);
+        ReflectionTestUtils.setField(dispatcher, "bulkQueueCapacity", 1000);
+        ReflectionTestUtils.setField(dispatcher, "latencyTargetMillis", 2000L);
+        ReflectionTestUtils.setField(dispatcher, "tenantQueueQuota", 1000);
+        ReflectionTestUtils.setField(dispatcher, "defaultTenantWeight", 1);
+        dispatcher.start();
+
+        emailService = new EmailService();
+        ReflectionTestUtils.setField(emailService, "mailSender", mailSender);
+        ReflectionTestUtils.setField(emailService, "templateEngine", templateEngine);
+        ReflectionTestUtils.setField(emailService, "attachmentCache", new AttachmentCache());
+        ReflectionTestUtils.setField(emailService, "dispatcher", dispatcher);
+        ReflectionTestUtils.setField(emailService, "envelopeBatchSize", BATCH_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        dispatcher.stop();
+        server.close();
+    }
+
+    @Test
+    void envelopeBatchingSendsOneMessagePerChunk() {
+        List<String> failed = emailService.sendBulkHtmlEmails(recipients(), "Campaign", "Hello volunteers",
+                List.of(), MailDispatcher.DEFAULT_TENANT, true);
+
+        assertThat(failed).isEmpty();
+        assertThat(server.getMessageCount()).isEqualTo(3);
+        assertThat(server.getRecipientCount()).isEqualTo(RECIPIENTS);
+    }
+
+    @Test
+    void envelopeBatchingTransfersTheBodyOncePerChunk() {
+        emailService.sendBulkHtmlEmails(recipients(), "Campaign", "Hello volunteers",
+                List.of(), MailDispatcher.DEFAULT_TENANT, false);
+        long perRecipientBytes = server.getDataBytes();
+        emailService.sendBulkHtmlEmails(recipients(), "Campaign", "Hello volunteers",
+                List.of(), MailDispatcher.DEFAULT_TENANT, true);
+        long batchedBytes = server.getDataBytes() - perRecipientBytes;
+
+        assertThat(server.getMessageCount()).isEqualTo(RECIPIENTS + 3);
+        // 120 copies of the body against 3 (Bcc is not transmitted, so the batched copies are no larger)
+        assertThat(batchedBytes * 10).isLessThan(perRecipientBytes);
+        System.out.printf("bulk to %d recipients: %d bytes per recipient, %d bytes batched by %d%n",
+                RECIPIENTS, perRecipientBytes, batchedBytes, BATCH_SIZE);
+    }
+
+    @Test
+    void rejectedRecipientsDoNotFailTheirChunk() {
+        List<String> recipients = recipients();
+        recipients.set(7, "invalid7@example.com");
+        recipients.set(60, "invalid60@example.com");
+        server.setRejectedMarker("invalid");
+
+        List<String> failed = emailService.sendBulkHtmlEmails(recipients, "Campaign", "Hello volunteers",
+                List.of(), MailDispatcher.DEFAULT_TENANT, true);
+
+        assertThat(failed).containsExactly("invalid7@example.com", "invalid60@example.com");
+        assertThat(server.getMessageCount()).isEqualTo(3);
+        assertThat(server.getRecipientCount()).isEqualTo(RECIPIENTS - 2);
+    }
+
+    private List<String> recipients() {
+        List<String> recipients = new ArrayList<>(RECIPIENTS);
+        for (int i = 0; i < RECIPIENTS; i++) {
+            recipients.add("volunteer" + i + "@example.com");
+        }
+        return recipients;
+    }
+}
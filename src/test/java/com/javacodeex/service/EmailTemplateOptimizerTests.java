@@ -0,0 +1,66 @@
+package com.javacodeex.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailTemplateOptimizerTests {
+
+    @Test
+    void inlinesRulesInCascadeOrder() {
+        String optimized = EmailTemplateOptimizer.optimize("<html><head><style>"
+                + "p { color: red; margin: 0 } .note { color: blue } p.note { font-weight: bold }"
+                + "</style></head><body><p class=\"note\" style=\"margin: 4px\">x</p><p>y</p></body></html>");
+
+        assertThat(optimized).doesNotContain("<style>");
+        assertThat(optimized).contains("<p class=\"note\" style=\"color:blue;margin:4px;font-weight:bold\">x</p>");
+        assertThat(optimized).contains("<p style=\"color:red;margin:0\">y</p>");
+    }
+
+    @Test
+    void keepsRulesThatCannotBeInlined() {
+        String optimized = EmailTemplateOptimizer.optimize("<html><head><style>"
+                + "a { color: red } a:hover { color: blue } @media (max-width: 600px) { .wide { width: 100% } }"
+                + "</style></head><body><!-- note --><a href=\"#\">x</a></body></html>");
+
+        assertThat(optimized).contains("<style>a:hover{color: blue}@media (max-width: 600px){.wide { width: 100% }}</style>");
+        assertThat(optimized).contains("<a href=\"#\" style=\"color:red\">x</a>");
+        assertThat(optimized).doesNotContain("note");
+    }
+
+    @Test
+    void keepsPseudoClassesOnAttributeSelectors() {
+        String optimized = EmailTemplateOptimizer.optimize("<html><head><style>"
+                + "a[href]:hover { color: blue } a[href^=\"https:\"] { color: green }"
+                + "</style></head><body><a href=\"https://example.com\">x</a></body></html>");
+
+        assertThat(optimized).contains("<style>a[href]:hover{color: blue}</style>");
+        assertThat(optimized).contains("<a href=\"https://example.com\" style=\"color:green\">x</a>");
+    }
+
+    @Test
+    void optimizedTemplateRendersLikeTheOriginal() throws Exception {
+        String original = new ClassPathResource("templates/teamTemplate.html").getContentAsString(StandardCharsets.UTF_8);
+        String optimized = EmailTemplateOptimizer.optimize(original);
+
+        TemplateEngine engine = new TemplateEngine();
+        engine.setTemplateResolver(new StringTemplateResolver());
+        Context context = new Context();
+        context.setVariable("organizationName", "Green Earth");
+        context.setVariable("teamName", "Eco Warriors");
+        context.setVariable("members", "3");
+        String rendered = engine.process(optimized, context);
+
+        assertThat(optimized.length()).isLessThan(original.length());
+        assertThat(rendered).doesNotContain("th:").doesNotContain("\n    ");
+        assertThat(rendered).contains("Organization: <span>Green Earth</span>");
+        assertThat(rendered).contains("<span class=\"value\" style=\"margin-left:10px\">Eco Warriors</span>");
+        assertThat(rendered).contains("<div class=\"header\" style=\"background-color:#4F46E5;color:white;padding:20px;text-align:center\">");
+    }
+}
@@ -0,0 +1,181 @@
+package com.javacodeex.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Minimal local SMTP stand-in for tests: accepts every message after an
+// optional delay per client round trip (to simulate provider latency), or
+// rejects MAIL FROM with 451 while failing is set. RCPT TO is refused with 550
+// for addresses containing the rejected marker.
+class FakeSmtpServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final long commandDelayMillis;
+    private final AtomicInteger messages = new AtomicInteger();
+    private final AtomicInteger commands = new AtomicInteger();
+    private final AtomicInteger recipients = new AtomicInteger();
+    private final AtomicLong dataBytes = new AtomicLong();
+    private volatile boolean failing;
+    private volatile String extensions = "";
+    private volatile String rejectedMarker;
+    private volatile String lastMailFrom;
+
+    FakeSmtpServer(long commandDelayMillis) throws IOException {
+        this.commandDelayMillis = commandDelayMillis;
+        this.serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(this::accept, "fake-smtp-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getMessageCount() {
+        return messages.get();
+    }
+
+    int getCommandCount() {
+        return commands.get();
+    }
+
+    // Accepted RCPT TO commands
+    int getRecipientCount() {
+        return recipients.get();
+    }
+
+    // Message bytes received in DATA and BDAT
+    long getDataBytes() {
+        return dataBytes.get();
+    }
+
+    void setRejectedMarker(String rejectedMarker) {
+        this.rejectedMarker = rejectedMarker;
+    }
+
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    // Extra EHLO capability lines, e.g. "PIPELINING" or "CHUNKING"
+    void setExtensions(String... extensions) {
+        this.extensions = String.join(",", extensions);
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 fake-smtp ready");
+            String line;
+            while ((line = in.readLine()) != null) {
+                commands.incrementAndGet();
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                // One simulated round trip per batch of commands: pipelined commands already buffered add none
+                if (!in.ready()) {
+                    delay();
+                }
+                switch (command) {
+                    case "EHLO":
+                        StringBuilder ehlo = new StringBuilder("250-fake-smtp\r\n");
+                        for (String extension : extensions.split(",")) {
+                            if (!extension.isEmpty()) {
+                                ehlo.append("250-").append(extension).append("\r\n");
+                            }
+                        }
+                        reply(out, ehlo.append("250 8BITMIME").toString());
+                        break;
+                    case "HELO":
+                    case "RSET":
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "RCPT":
+                        String marker = rejectedMarker;
+                        if (marker != null && line.contains(marker)) {
+                            reply(out, "550 No such user");
+                        } else {
+                            recipients.incrementAndGet();
+                            reply(out, "250 OK");
+                        }
+                        break;
+                    case "MAIL":
+                        lastMailFrom = line;
+                        reply(out, failing ? "451 Temporary failure" : "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // discard the message body
+                            dataBytes.addAndGet(line.length() + 2);
+                        }
+                        messages.incrementAndGet();
+                        reply(out, "250 OK queued");
+                        break;
+                    case "BDAT":
+                        String[] parts = line.split(" ");
+                        int size = Integer.parseInt(parts[1]);
+                        for (int read = 0; read < size; read++) {
+                            in.read();
+                        }
+                        dataBytes.addAndGet(size);
+                        if (parts.length > 2 && parts[2].equalsIgnoreCase("LAST")) {
+                            messages.incrementAndGet();
+                        }
+                        reply(out, "250 OK");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // connection closed
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        if (commandDelayMillis > 0) {
+            Thread.sleep(commandDelayMillis);
+        }
+    }
+
+    private void reply(OutputStream out, String reply) throws IOException {
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    String getLastMailFrom() {
+        return lastMailFrom;
+    }
+
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+}
@@ -0,0 +1,77 @@
+package com.javacodeex.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Timeouts spread over days: each fires once, within a tick of its deadline,
+// and cancelled ones never fire. The million-timeout run is a benchmark.
+class HierarchicalTimingWheelTests {
+
+    private static final long TICK = 100;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @Test
+    void firesEveryLiveTimeoutOnceWithinATick() {
+        fireAndCheck(20_000, DAY);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void firesAMillionTimeoutsOverThreeDays() {
+        long insertNanos = fireAndCheck(1_000_000, 3 * DAY);
+        System.out.printf("timing wheel: 1000000 inserts at %d ns/insert%n", insertNanos / 1_000_000);
+    }
+
+    // Returns the time spent inserting
+    private long fireAndCheck(int count, long span) {
+        long start = 1_700_000_000_000L;
+        HierarchicalTimingWheel<long[]> wheel = new HierarchicalTimingWheel<>(TICK, 8, 4, start);
+        Random random = new Random(42);
+        List<HierarchicalTimingWheel.Timeout<long[]>> timeouts = new ArrayList<>(count);
+
+        long insertStart = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long deadline = start + (long) (random.nextDouble() * span);
+            // value: deadline, times fired, cancelled flag
+            timeouts.add(wheel.add(deadline, new long[] {deadline, 0, 0}));
+        }
+        long insertNanos = System.nanoTime() - insertStart;
+        for (int i = 0; i < count; i += 2) {
+            assertThat(wheel.cancel(timeouts.get(i))).isTrue();
+            timeouts.get(i).getValue()[2] = 1;
+        }
+        assertThat(wheel.size()).isEqualTo(count / 2);
+
+        long[] now = {start};
+        for (now[0] = start; now[0] <= start + span + TICK; now[0] += TICK) {
+            wheel.advance(now[0], value -> {
+                assertThat(value[2]).isZero();
+                assertThat(value[0] / TICK).isEqualTo(now[0] / TICK);
+                value[1]++;
+            });
+        }
+        for (HierarchicalTimingWheel.Timeout<long[]> timeout : timeouts) {
+            long[] value = timeout.getValue();
+            assertThat(value[1]).isEqualTo(value[2] == 1 ? 0 : 1);
+        }
+        assertThat(wheel.size()).isZero();
+        return insertNanos;
+    }
+
+    @Test
+    void firesOverdueTimeoutsOnNextAdvance() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 8, 4, 10_000);
+        wheel.add(5_000, "overdue");
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(10_000, fired::add);
+
+        assertThat(fired).containsExactly("overdue");
+    }
+}
@@ -0,0 +1,98 @@
+package com.javacodeex.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyCacheTests {
+
+    private IdempotencyCache cache;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (cache != null) {
+            cache.stop();
+        }
+    }
+
+    @Test
+    void concurrentRetriesHaveExactlyOneOwnerAndSeeItsResponse() throws Exception {
+        cache = start(60_000);
+        int threads = 32;
+        AtomicInteger owners = new AtomicInteger();
+        AtomicInteger replayed = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                try {
+                    go.await();
+                    IdempotencyCache.Claim claim = cache.claim("POST /send-email abc");
+                    if (claim.isOwner()) {
+                        owners.incrementAndGet();
+                        cache.complete("POST /send-email abc", claim, response("sent"));
+                    } else if ("sent".equals(new String(claim.await(5000).getBody(), StandardCharsets.UTF_8))) {
+                        replayed.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        go.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(owners.get()).isEqualTo(1);
+        assertThat(replayed.get()).isEqualTo(threads - 1);
+    }
+
+    @Test
+    void abandonedKeyCanBeClaimedAgain() throws Exception {
+        cache = start(60_000);
+        IdempotencyCache.Claim first = cache.claim("key");
+        IdempotencyCache.Claim waiter = cache.claim("key");
+
+        cache.abandon("key", first);
+
+        assertThat(waiter.await(1000)).isNull();
+        assertThat(cache.claim("key").isOwner()).isTrue();
+    }
+
+    @Test
+    void completedKeysExpireAfterTheTtl() throws Exception {
+        cache = start(400);
+        IdempotencyCache.Claim claim = cache.claim("key");
+        cache.complete("key", claim, response("sent"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.claim("key").isOwner()).isTrue();
+    }
+
+    private IdempotencyCache start(long ttlMillis) throws Exception {
+        IdempotencyCache started = new IdempotencyCache();
+        ReflectionTestUtils.setField(started, "ttlMillis", ttlMillis);
+        ReflectionTestUtils.setField(started, "bucketCount", 4);
+        ReflectionTestUtils.setField(started, "persistencePath", "");
+        started.start();
+        return started;
+    }
+
+    private IdempotencyCache.StoredResponse response(String body) {
+        return new IdempotencyCache.StoredResponse(200, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+}
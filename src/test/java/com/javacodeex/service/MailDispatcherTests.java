@@ -0,0 +1,101 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A transactional send submitted behind a large bulk backlog should not wait for it.
+class MailDispatcherTests {
+
+    private static final int BULK_MESSAGES = 500;
+
+    private MailDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void transactionalMailSkipsBulkBacklog() throws Exception {
+        dispatcher = dispatcher(new SimpleMeterRegistry(), Map.of());
+
+        // Bulk sends hold their workers until the gate opens, so the backlog cannot drain meanwhile
+        CountDownLatch gate = new CountDownLatch(1);
+        Queue<String> completed = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> bulk = new ArrayList<>();
+        for (int i = 0; i < BULK_MESSAGES; i++) {
+            String name = "bulk-" + i;
+            bulk.add(dispatcher.submit(MailDispatcher.Lane.BULK, () -> {
+                await(gate);
+                completed.add(name);
+            }));
+        }
+
+        dispatcher.submit(MailDispatcher.Lane.TRANSACTIONAL, () -> completed.add("transactional")).get(5, TimeUnit.SECONDS);
+
+        assertThat(completed).containsExactly("transactional");
+        assertThat(dispatcher.getQueueDepth(MailDispatcher.Lane.BULK)).isGreaterThan(0);
+
+        gate.countDown();
+        CompletableFuture.allOf(bulk.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        assertThat(completed).hasSize(BULK_MESSAGES + 1).first().isEqualTo("transactional");
+    }
+
+    @Test
+    void unknownOrganizationsShareOneSetOfMeters() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dispatcher = dispatcher(registry, Map.of("Green Earth", 3));
+
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        sends.add(dispatcher.submit(MailDispatcher.Lane.BULK, "Green Earth", () -> { }));
+        for (int i = 0; i < 50; i++) {
+            sends.add(dispatcher.submit(MailDispatcher.Lane.BULK, "Org " + i, () -> { }));
+        }
+        CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertThat(registry.find("mail.dispatch.tenant.sent").counters())
+                .extracting(counter -> counter.getId().getTag("tenant"))
+                .containsExactlyInAnyOrder("Green Earth", MailDispatcher.OTHER_TENANT);
+        assertThat(registry.get("mail.dispatch.tenant.sent").tag("tenant", MailDispatcher.OTHER_TENANT).counter().count())
+                .isEqualTo(50);
+        assertThat(registry.find("mail.dispatch.tenant.queue.depth").gauges()).hasSize(1);
+        assertThat(dispatcher.getQueuedTenants(MailDispatcher.Lane.BULK)).isZero();
+    }
+
+    private MailDispatcher dispatcher(SimpleMeterRegistry registry, Map<String, Integer> tenantWeights) {
+        MailDispatcher dispatcher = new MailDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "meterRegistry", registry);
+        ReflectionTestUtils.setField(dispatcher, "workers", 4);
+        ReflectionTestUtils.setField(dispatcher, "reservedWorkers", 1);
+        ReflectionTestUtils.setField(dispatcher, "bulkQueueCapacity", BULK_MESSAGES);
+        ReflectionTestUtils.setField(dispatcher, "latencyTargetMillis", 2000L);
+        ReflectionTestUtils.setField(dispatcher, "tenantQueueQuota", BULK_MESSAGES);
+        ReflectionTestUtils.setField(dispatcher, "defaultTenantWeight", 1);
+        ReflectionTestUtils.setField(dispatcher, "tenantWeights", tenantWeights);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private void await(CountDownLatch gate) {
+        try {
+            gate.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
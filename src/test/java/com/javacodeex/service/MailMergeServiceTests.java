@@ -0,0 +1,155 @@
+package com.javacodeex.service;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MailMergeServiceTests {
+
+    private final EmailService emailService = mock(EmailService.class);
+    // recipient -> rendered "subject | message"
+    private final Map<String, String> sent = new ConcurrentHashMap<>();
+    private MailMergeService mailMerge;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Session session = Session.getInstance(new Properties());
+        when(emailService.acquireAttachments(any())).thenReturn(new AttachmentCache().new Leases());
+        when(emailService.createHtmlEmail(anyString(), anyString(), anyString(), any())).thenAnswer(invocation -> {
+            MimeMessage message = new MimeMessage(session);
+            message.setRecipients(MimeMessage.RecipientType.TO, invocation.<String>getArgument(0));
+            message.setSubject(invocation.getArgument(1));
+            message.setText(invocation.getArgument(2));
+            return message;
+        });
+        when(emailService.sendAsync(any(), eq(MailDispatcher.Lane.BULK), any())).thenAnswer(invocation -> {
+            MimeMessage message = invocation.getArgument(0);
+            String to = message.getAllRecipients()[0].toString();
+            if (to.startsWith("bounce")) {
+                return CompletableFuture.failedFuture(new MailSendException("550 mailbox unavailable"));
+            }
+            sent.put(to, message.getSubject() + " | " + message.getContent());
+            return CompletableFuture.completedFuture(null);
+        });
+
+        mailMerge = new MailMergeService();
+        ReflectionTestUtils.setField(mailMerge, "emailService", emailService);
+        ReflectionTestUtils.setField(mailMerge, "renderParallelism", 2);
+        ReflectionTestUtils.setField(mailMerge, "maxInFlight", 2);
+        ReflectionTestUtils.setField(mailMerge, "shutdownTimeoutMillis", 5000L);
+        mailMerge.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailMerge.stop();
+    }
+
+    @Test
+    void rendersEachRecipientsCopyFromTheirVariables() {
+        List<String> failed = mailMerge.sendMerge("Hi {{name}}", "Your shift: {{ shift }} ({{email}})",
+                List.of(recipient("ana@example.com", Map.of("name", "Ana", "shift", "Mon")),
+                        recipient("ben@example.com", Map.of("name", "Ben")),
+                        recipient("cy@example.com", null)),
+                List.of(), "Org");
+
+        assertThat(failed).isEmpty();
+        assertThat(sent).containsOnly(
+                Map.entry("ana@example.com", "Hi Ana | Your shift: Mon (ana@example.com)"),
+                Map.entry("ben@example.com", "Hi Ben | Your shift:  (ben@example.com)"),
+                Map.entry("cy@example.com", "Hi  | Your shift:  (cy@example.com)"));
+    }
+
+    @Test
+    void reportsFailedRecipientsInRequestOrder() {
+        List<String> failed = mailMerge.sendMerge("Hi", "Body",
+                List.of(recipient("bounce-1@example.com", null), recipient("ok@example.com", null),
+                        recipient("bounce-2@example.com", null), recipient("ok-2@example.com", null),
+                        recipient("bounce-3@example.com", null)),
+                List.of(), "Org");
+
+        assertThat(failed).containsExactly("bounce-1@example.com", "bounce-2@example.com", "bounce-3@example.com");
+        assertThat(sent).containsOnlyKeys("ok@example.com", "ok-2@example.com");
+    }
+
+    @Test
+    void rendersGoOnWhileTheBulkLaneIsFull() throws Exception {
+        // The dispatcher blocks hand-offs until the lane has room again
+        CountDownLatch laneFull = new CountDownLatch(1);
+        AtomicInteger rendered = new AtomicInteger();
+        when(emailService.createHtmlEmail(anyString(), anyString(), anyString(), any())).thenAnswer(invocation -> {
+            rendered.incrementAndGet();
+            return new MimeMessage(Session.getInstance(new Properties()));
+        });
+        when(emailService.sendAsync(any(), eq(MailDispatcher.Lane.BULK), any())).thenAnswer(invocation -> {
+            laneFull.await();
+            return CompletableFuture.completedFuture(null);
+        });
+        ReflectionTestUtils.setField(mailMerge, "maxInFlight", 10);
+        List<MailMergeService.MergeRecipient> recipients = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            recipients.add(recipient("user" + i + "@example.com", null));
+        }
+
+        CompletableFuture<List<String>> merge = CompletableFuture.supplyAsync(
+                () -> mailMerge.sendMerge("Hi", "Body", recipients, List.of(), "Org"));
+
+        // Two render threads, yet all six render while every hand-off is stuck
+        long deadline = System.currentTimeMillis() + 5000;
+        while (rendered.get() < 6 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(rendered).hasValue(6);
+        laneFull.countDown();
+        assertThat(merge.get(5, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    @Test
+    void stopWaitsForRendersInProgress() {
+        ForkJoinPool renderPool = (ForkJoinPool) ReflectionTestUtils.getField(mailMerge, "renderPool");
+        AtomicBoolean finished = new AtomicBoolean();
+        renderPool.execute(() -> {
+            try {
+                Thread.sleep(200);
+                finished.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        mailMerge.stop();
+
+        assertThat(renderPool.isTerminated()).isTrue();
+        assertThat(finished).isTrue();
+    }
+
+    private static MailMergeService.MergeRecipient recipient(String email, Map<String, Object> variables) {
+        MailMergeService.MergeRecipient recipient = new MailMergeService.MergeRecipient();
+        recipient.setEmail(email);
+        recipient.setVariables(variables);
+        return recipient;
+    }
+}
@@ -0,0 +1,54 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailWarmupTests {
+
+    @Test
+    void warmsTemplatesMessagesAndConnections() throws Exception {
+        try (FakeSmtpServer server = new FakeSmtpServer(0)) {
+            JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+            mailSender.setHost("localhost");
+            mailSender.setPort(server.getPort());
+
+            ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+            resolver.setPrefix("templates/");
+            resolver.setSuffix(".html");
+            SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+            templateEngine.setTemplateResolver(resolver);
+
+            EmailService emailService = new EmailService();
+            ReflectionTestUtils.setField(emailService, "mailSender", mailSender);
+            ReflectionTestUtils.setField(emailService, "templateEngine", templateEngine);
+            ReflectionTestUtils.setField(emailService, "attachmentCache", new AttachmentCache());
+
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            MailWarmup warmup = new MailWarmup();
+            ReflectionTestUtils.setField(warmup, "templateEngine", templateEngine);
+            ReflectionTestUtils.setField(warmup, "mailSender", mailSender);
+            ReflectionTestUtils.setField(warmup, "emailService", emailService);
+            ReflectionTestUtils.setField(warmup, "meterRegistry", meterRegistry);
+            ReflectionTestUtils.setField(warmup, "enabled", true);
+            ReflectionTestUtils.setField(warmup, "iterations", 2);
+            ReflectionTestUtils.setField(warmup, "connect", true);
+            ReflectionTestUtils.setField(warmup, "connectTimeoutMillis", 5000L);
+            ReflectionTestUtils.setField(warmup, "templatePrefix", "classpath:/templates/");
+            ReflectionTestUtils.setField(warmup, "templateSuffix", ".html");
+
+            warmup.run(null);
+
+            // EHLO and QUIT from testConnection, no message sent
+            assertThat(server.getCommandCount()).isGreaterThanOrEqualTo(2);
+            assertThat(server.getMessageCount()).isZero();
+            assertThat(meterRegistry.find("mail.warmup").timers()).hasSize(3);
+            assertThat(templateEngine.getCacheManager().getTemplateCache().size()).isGreaterThanOrEqualTo(4);
+        }
+    }
+}
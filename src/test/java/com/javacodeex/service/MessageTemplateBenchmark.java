@@ -0,0 +1,81 @@
+package com.javacodeex.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// String.format against the precompiled templates behind the generate*Message
+// helpers, on the same format strings. Not a unit test (surefire skips it); run
+// with mvn test-compile, then this class's main() on the test classpath, e.g.
+// java -cp target/test-classes:target/classes:<mvn dependency:build-classpath> com.javacodeex.service.MessageTemplateBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageTemplateBenchmark {
+
+    private final MessageTemplate welcome = MessageTemplate.compileFormat(EmailService.WELCOME_FORMAT);
+    private final MessageTemplate taskReminder = MessageTemplate.compileFormat(EmailService.TASK_REMINDER_FORMAT);
+    private final MessageTemplate teamUpdate = MessageTemplate.compileFormat(EmailService.TEAM_UPDATE_FORMAT);
+
+    private final String firstName = "Ana";
+    private final String lastName = "Silva";
+    private final String email = "ana@example.com";
+    private final String skills = "First aid, Cooking, Logistics";
+    private final String taskTitle = "Beach Cleanup";
+    private final String date = "2024-05-01";
+    private final String time = "09:00";
+    private final String location = "Pier 3";
+    private final String description = "Collect plastic along the north shore";
+    private final String updateMessage = "The meeting moved to the community hall.";
+
+    @Benchmark
+    public String welcomeFormat() {
+        return String.format(EmailService.WELCOME_FORMAT, firstName, firstName, lastName, email, skills);
+    }
+
+    @Benchmark
+    public String welcomeTemplate() {
+        return welcome.render(firstName, firstName, lastName, email, skills);
+    }
+
+    @Benchmark
+    public String taskReminderFormat() {
+        return String.format(EmailService.TASK_REMINDER_FORMAT, taskTitle, date, time, location, description);
+    }
+
+    @Benchmark
+    public String taskReminderTemplate() {
+        return taskReminder.render(taskTitle, date, time, location, description);
+    }
+
+    @Benchmark
+    public String teamUpdateFormat() {
+        return String.format(EmailService.TEAM_UPDATE_FORMAT, taskTitle, updateMessage, location, date, location);
+    }
+
+    @Benchmark
+    public String teamUpdateTemplate() {
+        return teamUpdate.render(taskTitle, updateMessage, location, date, location);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MessageTemplateBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,51 @@
+package com.javacodeex.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageTemplateTests {
+
+    private final EmailService emailService = new EmailService();
+
+    @Test
+    void generatedMessagesMatchStringFormat() {
+        EmailService.WelcomeEmailRequest request = new EmailService.WelcomeEmailRequest();
+        request.setFirstName("Ana");
+        request.setLastName("Silva");
+        request.setEmail("ana@example.com");
+        request.setSkills(List.of("First aid", "Cooking"));
+
+        assertThat(emailService.generateWelcomeMessage(request)).isEqualTo(String.format(EmailService.WELCOME_FORMAT,
+                "Ana", "Ana", "Silva", "ana@example.com", "First aid, Cooking"));
+        assertThat(emailService.generateTaskReminderMessage("Beach Cleanup", "2024-05-01", "09:00", "Pier 3", "Bring gloves (100% cotton)"))
+                .isEqualTo(String.format(EmailService.TASK_REMINDER_FORMAT,
+                        "Beach Cleanup", "2024-05-01", "09:00", "Pier 3", "Bring gloves (100% cotton)"));
+        assertThat(emailService.generateTeamUpdateMessage("Eco Warriors", "Park", null, "Community Hall", "Meeting moved"))
+                .isEqualTo(String.format(EmailService.TEAM_UPDATE_FORMAT,
+                        "Eco Warriors", "Meeting moved", "Park", null, "Community Hall"));
+    }
+
+    @Test
+    void positionalTemplatesFollowFormatEscapes() {
+        MessageTemplate template = MessageTemplate.compileFormat("%s is 100%% done%n");
+
+        assertThat(template.render("Task")).isEqualTo(String.format("%s is 100%% done%n", "Task"));
+        assertThat(template.renderTo(new StringBuilder("> "), "Task").toString())
+                .isEqualTo("> " + String.format("%s is 100%% done%n", "Task"));
+        assertThatThrownBy(() -> MessageTemplate.compileFormat("%d items")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> template.render()).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void namedTemplatesRenderMissingVariablesAsEmpty() {
+        MessageTemplate template = MessageTemplate.compile("Hi {{ name }}, see {{link}}");
+
+        assertThat(template.render(Map.of("name", "Ana"))).isEqualTo("Hi Ana, see ");
+        assertThatThrownBy(() -> template.render("Ana")).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,168 @@
+package com.javacodeex.service;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.google.cloud.Timestamp;
+import com.javacodeex.model.Notification;
+import com.javacodeex.model.NotificationArchiveSegment;
+import com.javacodeex.repository.NotificationArchiveSegmentRepository;
+import com.javacodeex.repository.NotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NotificationArchiveServiceTests {
+
+    // 2020-01-01T00:00:00Z
+    private static final long DAY_ONE = 1577836800L;
+    private static final long DAY = 86400L;
+
+    // In-memory stand-ins for the notifications collection, the segment index and the bucket
+    private final List<Notification> notifications = new ArrayList<>();
+    private final Map<String, NotificationArchiveSegment> segments = new LinkedHashMap<>();
+    private final Map<String, byte[]> objects = new LinkedHashMap<>();
+    private NotificationArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        NotificationRepository notificationRepository = mock(NotificationRepository.class);
+        when(notificationRepository.findByReadAndTimestampLessThanOrderByTimestampAsc(anyBoolean(), any(Timestamp.class), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    boolean read = invocation.getArgument(0);
+                    Timestamp cutoff = invocation.getArgument(1);
+                    Pageable pageable = invocation.getArgument(2);
+                    return Flux.fromIterable(notifications.stream()
+                            .filter(notification -> notification.isRead() == read && notification.getTimestamp().compareTo(cutoff) < 0)
+                            .sorted(Comparator.comparing(Notification::getTimestamp))
+                            .limit(pageable.getPageSize())
+                            .toList());
+                });
+        when(notificationRepository.deleteAll(anyIterable())).thenAnswer(invocation -> {
+            Iterable<Notification> deleted = invocation.getArgument(0);
+            deleted.forEach(notifications::remove);
+            return Mono.empty();
+        });
+
+        NotificationArchiveSegmentRepository segmentRepository = mock(NotificationArchiveSegmentRepository.class);
+        when(segmentRepository.save(any(NotificationArchiveSegment.class))).thenAnswer(invocation -> {
+            NotificationArchiveSegment segment = invocation.getArgument(0);
+            segments.put(segment.getId(), segment);
+            return Mono.just(segment);
+        });
+        when(segmentRepository.findByEmailsContaining(anyString())).thenAnswer(invocation -> {
+            String email = invocation.getArgument(0);
+            return Flux.fromIterable(segments.values().stream()
+                    .filter(segment -> segment.getEmails().contains(email))
+                    .toList());
+        });
+
+        AmazonS3 s3 = mock(AmazonS3.class);
+        when(s3.putObject(any(PutObjectRequest.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+            objects.put(request.getKey(), request.getInputStream().readAllBytes());
+            return null;
+        });
+        when(s3.getObject(anyString(), anyString())).thenAnswer(invocation -> {
+            S3Object object = new S3Object();
+            object.setObjectContent(new ByteArrayInputStream(objects.get((String) invocation.getArgument(1))));
+            return object;
+        });
+
+        archiveService = new NotificationArchiveService();
+        ReflectionTestUtils.setField(archiveService, "notificationRepository", notificationRepository);
+        ReflectionTestUtils.setField(archiveService, "segmentRepository", segmentRepository);
+        ReflectionTestUtils.setField(archiveService, "s3", s3);
+        ReflectionTestUtils.setField(archiveService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(archiveService, "bucketName", "archive-bucket");
+        ReflectionTestUtils.setField(archiveService, "enabled", false);
+        ReflectionTestUtils.setField(archiveService, "minAgeDays", 30L);
+        ReflectionTestUtils.setField(archiveService, "batchSize", 2);
+        ReflectionTestUtils.setField(archiveService, "maxBatchesPerRun", 100);
+        ReflectionTestUtils.setField(archiveService, "prefix", "archive/notifications/");
+        ReflectionTestUtils.setField(archiveService, "attachmentsPrefix", "attachments/");
+        ReflectionTestUtils.setField(archiveService, "storageClass", "");
+        ReflectionTestUtils.setField(archiveService, "timeoutMillis", 5000L);
+        archiveService.start();
+    }
+
+    @Test
+    void movesOldReadNotificationsIntoDailySegments() throws Exception {
+        notifications.add(notification("a1", "ann@example.com", true, DAY_ONE + 10));
+        notifications.add(notification("a2", "bob@example.com", true, DAY_ONE + 20));
+        notifications.add(notification("a3", "ann@example.com", true, DAY_ONE + 30));
+        notifications.add(notification("b1", "ann@example.com", true, DAY_ONE + DAY + 10));
+        notifications.add(notification("b2", "bob@example.com", true, DAY_ONE + DAY + 20));
+        Notification unread = notification("u1", "ann@example.com", false, DAY_ONE);
+        Notification recent = notification("r1", "ann@example.com", true, Timestamp.now().getSeconds());
+        notifications.add(unread);
+        notifications.add(recent);
+
+        long archived = archiveService.archive();
+
+        assertThat(archived).isEqualTo(5);
+        assertThat(notifications).containsExactlyInAnyOrder(unread, recent);
+        // Batches of two: [a1 a2] [a3 | b1] [b2], split at the day boundary
+        assertThat(segments).hasSize(4);
+        assertThat(objects.keySet()).allMatch(key -> key.startsWith("archive/notifications/2020/01/0") && key.endsWith(".ndjson.gz"));
+        assertThat(segments.values().stream().mapToInt(NotificationArchiveSegment::getCount).sum()).isEqualTo(5);
+        int lines = 0;
+        for (byte[] object : objects.values()) {
+            lines += new String(new GZIPInputStream(new ByteArrayInputStream(object)).readAllBytes(), StandardCharsets.UTF_8)
+                    .split("\n").length;
+        }
+        assertThat(lines).isEqualTo(5);
+    }
+
+    @Test
+    void looksUpArchivedNotificationsByEmailNewestFirst() throws Exception {
+        notifications.add(notification("a1", "ann@example.com", true, DAY_ONE + 10));
+        notifications.add(notification("a2", "bob@example.com", true, DAY_ONE + 20));
+        notifications.add(notification("b1", "ann@example.com", true, DAY_ONE + DAY + 10));
+        archiveService.archive();
+
+        List<Map<String, Object>> archived = archiveService.findArchived("ann@example.com");
+
+        assertThat(archived).extracting(row -> row.get("id")).containsExactly("b1", "a1");
+        assertThat(archived.get(0)).containsEntry("title", "Title b1").containsEntry("read", true);
+        assertThat(archiveService.findArchived("nobody@example.com")).isEmpty();
+    }
+
+    @Test
+    void refusesAPrefixOverlappingAttachments() {
+        ReflectionTestUtils.setField(archiveService, "prefix", "attachments/archive/");
+
+        assertThatThrownBy(() -> archiveService.start())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("attachments.key-prefix");
+    }
+
+    private Notification notification(String id, String email, boolean read, long seconds) {
+        Notification notification = new Notification("Title " + id, "Content", read,
+                Timestamp.ofTimeSecondsAndNanos(seconds, 0), email);
+        notification.setId(id);
+        return notification;
+    }
+}
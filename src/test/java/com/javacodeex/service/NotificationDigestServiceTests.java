@@ -0,0 +1,70 @@
+package com.javacodeex.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationDigestServiceTests {
+
+    private final EmailService emailService = mock(EmailService.class);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void coalescesABurstIntoOneDigestPerRecipient() throws Exception {
+        when(emailService.queueNotificationDigestEmail(anyString(), any(), anyLong(), anyLong()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        NotificationDigestService digests = digestService(10_000);
+
+        for (int i = 0; i < 300; i++) {
+            digests.sendNotificationEmail("org@example.com", "application_received", Map.of("opportunityTitle", "Post " + i));
+        }
+        digests.sendNotificationEmail("org@example.com", "new_opportunity", Map.of("title", "Beach Cleanup"));
+        digests.stop();
+
+        ArgumentCaptor<List<EmailService.DigestGroup>> groups = ArgumentCaptor.forClass(List.class);
+        verify(emailService, times(1)).queueNotificationDigestEmail(eq("org@example.com"), groups.capture(), anyLong(), anyLong());
+        verify(emailService, never()).sendNotificationEmail(anyString(), anyString(), any());
+        assertThat(groups.getValue()).extracting(EmailService.DigestGroup::getCount).containsExactly(300, 1);
+        assertThat(groups.getValue().get(0).getData()).hasSize(20);
+    }
+
+    @Test
+    void sendsImmediatelyOnceTheBufferIsFull() throws Exception {
+        NotificationDigestService digests = digestService(1);
+
+        digests.sendNotificationEmail("first@example.com", "new_opportunity", Map.of("title", "A"));
+        digests.sendNotificationEmail("second@example.com", "new_opportunity", Map.of("title", "B"));
+
+        verify(emailService).sendNotificationEmail("second@example.com", "new_opportunity", Map.of("title", "B"));
+        assertThat(digests.getOpenDigestCount()).isEqualTo(1);
+        digests.stop();
+        verify(emailService).sendNotificationEmail("first@example.com", "new_opportunity", Map.of("title", "A"));
+    }
+
+    private NotificationDigestService digestService(int maxRecipients) {
+        NotificationDigestService digests = new NotificationDigestService();
+        ReflectionTestUtils.setField(digests, "emailService", emailService);
+        ReflectionTestUtils.setField(digests, "enabled", true);
+        ReflectionTestUtils.setField(digests, "windowMillis", 60_000L);
+        ReflectionTestUtils.setField(digests, "maxRecipients", maxRecipients);
+        ReflectionTestUtils.setField(digests, "maxItemsPerType", 20);
+        ReflectionTestUtils.setField(digests, "flushIntervalMillis", 1000L);
+        digests.start();
+        return digests;
+    }
+}
@@ -0,0 +1,97 @@
+package com.javacodeex.service;
+
+import com.google.cloud.Timestamp;
+import com.javacodeex.model.Notification;
+import com.javacodeex.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NotificationExportServiceTests {
+
+    private static final String EMAIL = "user@example.com";
+
+    private final List<Notification> store = new ArrayList<>();
+    private final List<Integer> requestedPageSizes = new ArrayList<>();
+    private NotificationExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        NotificationRepository repository = mock(NotificationRepository.class);
+        // Behaves like the Firestore query: timestamp <= cursor, newest first, limited to the page size
+        when(repository.findByEmailAndTimestampLessThanEqualOrderByTimestampDesc(eq(EMAIL), any(Timestamp.class), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    Timestamp cursor = invocation.getArgument(1);
+                    Pageable pageable = invocation.getArgument(2);
+                    requestedPageSizes.add(pageable.getPageSize());
+                    return Flux.fromStream(store.stream()
+                            .filter(notification -> notification.getTimestamp().compareTo(cursor) <= 0)
+                            .sorted(Comparator.comparing(Notification::getTimestamp).reversed())
+                            .limit(pageable.getPageSize()));
+                });
+        exportService = new NotificationExportService();
+        ReflectionTestUtils.setField(exportService, "notificationRepository", repository);
+        ReflectionTestUtils.setField(exportService, "pageSize", 10);
+        ReflectionTestUtils.setField(exportService, "pageTimeoutMillis", 5000L);
+    }
+
+    @Test
+    void writesEveryNotificationOncePageByPage() throws Exception {
+        for (int i = 0; i < 95; i++) {
+            store.add(notification("n" + i, i));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exportService.writeNdjson(EMAIL, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(written).isEqualTo(95);
+        assertThat(lines).hasSize(95);
+        assertThat(lines[0]).startsWith("{\"id\":\"n94\",\"title\":\"Title n94\"");
+        assertThat(lines[94]).startsWith("{\"id\":\"n0\",");
+        assertThat(requestedPageSizes).hasSize(10).allMatch(size -> size <= 11);
+    }
+
+    @Test
+    void doesNotRepeatOrDropNotificationsSharingATimestampAcrossPages() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            store.add(notification("same" + i, 100));
+        }
+        for (int i = 0; i < 5; i++) {
+            store.add(notification("older" + i, i));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exportService.writeNdjson(EMAIL, out);
+
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertThat(written).isEqualTo(30);
+        for (int i = 0; i < 25; i++) {
+            assertThat(ndjson.split("\"id\":\"same" + i + "\"", -1)).hasSize(2);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertThat(ndjson).contains("\"id\":\"older" + i + "\"");
+        }
+    }
+
+    private Notification notification(String id, long seconds) {
+        Notification notification = new Notification("Title " + id, "Content", false,
+                Timestamp.ofTimeSecondsAndNanos(seconds, 0), EMAIL);
+        notification.setId(id);
+        return notification;
+    }
+}
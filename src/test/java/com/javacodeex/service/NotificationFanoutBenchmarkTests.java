@@ -0,0 +1,224 @@
+package com.javacodeex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.Timestamp;
+import com.javacodeex.config.NotificationFrameCodec;
+import com.javacodeex.model.Notification;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Drives the fan-out stage through a real in-process simple broker with
+// simulated STOMP subscriptions. The throughput runs (thousands of
+// subscriptions) are tagged "benchmark" and only run with -Pbenchmarks.
+class NotificationFanoutBenchmarkTests {
+
+    private static final int TOPICS = 500;
+    private static final int SUBSCRIBERS_PER_TOPIC = 10;
+    private static final int NOTIFICATIONS = 20_000;
+
+    // Held closed while publishing, so the shards find their queues full once it opens
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private volatile boolean gated;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final List<Long> deliveredIds = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private int queueCapacity = NOTIFICATIONS;
+    private long offerTimeoutMillis = 1000;
+
+    private SimpleBrokerMessageHandler broker;
+    private NotificationFanoutService fanout;
+
+    @AfterEach
+    void tearDown() {
+        if (fanout != null) {
+            fanout.stop();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void collapsesQueuedNotificationsForATopicIntoOneFrame() throws Exception {
+        // One shard, 10 topics, 1000 notifications queued behind the gate: every drained
+        // batch of 100 holds 10 notifications per topic, so each frame carries about 10
+        gated = true;
+        startBroker(true, 10, 2, 1, 100);
+
+        publish(1000, 10);
+        gate.countDown();
+        awaitDrained();
+
+        assertThat(delivered.get()).isEqualTo(1000L * 2);
+        // The first poll may take a short batch before the gate blocks it; the rest are full
+        assertThat(frames.get()).isLessThanOrEqualTo(delivered.get() / 8);
+    }
+
+    @Test
+    void saturatedShardShedsPushesInsteadOfDeliveringThemOutOfOrder() throws Exception {
+        // The shard is stuck on its first frame behind the gate and its queue holds 10,
+        // so most of the 50 pushes find it full; the caller must not deliver them itself
+        gated = true;
+        queueCapacity = 10;
+        offerTimeoutMillis = 0;
+        startBroker(false, 1, 1, 1, 1);
+
+        publish(50, 1);
+        double dropped = meterRegistry.get("notifications.fanout.dropped").counter().count();
+        assertThat(dropped).isPositive();
+        assertThat(frames.get()).isZero();
+
+        gate.countDown();
+        awaitDrained();
+
+        assertThat(delivered.get() + (long) dropped).isEqualTo(50);
+        assertThat(deliveredIds).isSorted();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void fansOutOneFramePerNotificationWithoutBatching() throws Exception {
+        startBroker(false, TOPICS, SUBSCRIBERS_PER_TOPIC, 4, 64);
+
+        long elapsed = publishAll();
+
+        assertThat(frames.get()).isEqualTo((long) NOTIFICATIONS * SUBSCRIBERS_PER_TOPIC);
+        assertThat(delivered.get()).isEqualTo((long) NOTIFICATIONS * SUBSCRIBERS_PER_TOPIC);
+        report("unbatched", elapsed);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void collapsesPendingNotificationsIntoFewerFramesWithBatching() throws Exception {
+        startBroker(true, TOPICS, SUBSCRIBERS_PER_TOPIC, 4, 64);
+
+        long elapsed = publishAll();
+
+        assertThat(delivered.get()).isEqualTo((long) NOTIFICATIONS * SUBSCRIBERS_PER_TOPIC);
+        // Each frame is one (topic, subscriber) push of a batch, so this is the average batch size;
+        // the ratio itself is asserted by collapsesQueuedNotificationsForATopicIntoOneFrame
+        double notificationsPerFrame = (double) delivered.get() / frames.get();
+        report("batched", elapsed);
+        System.out.printf("fan-out batched: %.2f notifications per frame%n", notificationsPerFrame);
+    }
+
+    private void startBroker(boolean batching, int topics, int subscribersPerTopic, int shards, int batchSize) {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        clientOutbound.subscribe(this::countFrame);
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        broker.start();
+        for (int topic = 0; topic < topics; topic++) {
+            for (int subscriber = 0; subscriber < subscribersPerTopic; subscriber++) {
+                broker.handleMessage(subscribe("session-" + topic + "-" + subscriber, "org" + topic + "@example.com"));
+            }
+        }
+
+        SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+
+        fanout = new NotificationFanoutService();
+        ReflectionTestUtils.setField(fanout, "messagingTemplate", template);
+        ReflectionTestUtils.setField(fanout, "frameCodec", new NotificationFrameCodec());
+        ReflectionTestUtils.setField(fanout, "latencyTracker", latencyTracker());
+        ReflectionTestUtils.setField(fanout, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(fanout, "shardCount", shards);
+        ReflectionTestUtils.setField(fanout, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(fanout, "offerTimeoutMillis", offerTimeoutMillis);
+        ReflectionTestUtils.setField(fanout, "batchSize", batchSize);
+        ReflectionTestUtils.setField(fanout, "batchingEnabled", batching);
+        fanout.start();
+    }
+
+    private NotificationLatencyTracker latencyTracker() {
+        NotificationLatencyTracker tracker = new NotificationLatencyTracker();
+        ReflectionTestUtils.setField(tracker, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tracker, "ackTimeoutMillis", 60000L);
+        ReflectionTestUtils.setField(tracker, "maxInFlight", 100000);
+        tracker.start();
+        return tracker;
+    }
+
+    private long publishAll() throws InterruptedException {
+        long start = System.nanoTime();
+        publish(NOTIFICATIONS, TOPICS);
+        awaitDrained();
+        return System.nanoTime() - start;
+    }
+
+    private void publish(int notifications, int topics) {
+        for (int i = 0; i < notifications; i++) {
+            Notification notification = new Notification("volunteer", "Volunteer " + i + " is applied for Post",
+                    false, Timestamp.now(), "org" + (i % topics) + "@example.com");
+            notification.setId(String.valueOf(i));
+            fanout.publish(notification);
+        }
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (fanout.getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private Message<byte[]> subscribe(String sessionId, String email) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(NotificationFanoutService.DESTINATION_PREFIX + email);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private void countFrame(Message<?> message) {
+        if (gated) {
+            try {
+                gate.await(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        frames.incrementAndGet();
+        try {
+            JsonNode payload = objectMapper.readTree((byte[]) message.getPayload());
+            delivered.addAndGet(payload.isArray() ? payload.size() : 1);
+            if (!payload.isArray()) {
+                deliveredIds.add(payload.get("id").asLong());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void report(String mode, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("fan-out %s: %d subscribers, %d notifications, %d frames, %d deliveries in %.2fs (%.0f deliveries/s)%n",
+                mode, TOPICS * SUBSCRIBERS_PER_TOPIC, NOTIFICATIONS, frames.get(), delivered.get(),
+                seconds, delivered.get() / seconds);
+    }
+}
@@ -0,0 +1,115 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationLatencyTrackerTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private NotificationLatencyTracker tracker;
+
+    @AfterEach
+    void tearDown() {
+        if (tracker != null) {
+            tracker.stop();
+        }
+    }
+
+    @Test
+    void recordsOnlyTheFirstAckOfANotification() {
+        tracker = tracker(60000L, 100, 0L);
+        tracker.persisted("n1", System.nanoTime());
+        tracker.published("n1");
+
+        tracker.acknowledged("n1", System.currentTimeMillis());
+        tracker.acknowledged("n1", System.currentTimeMillis());
+        tracker.acknowledged("n1", System.currentTimeMillis());
+
+        assertThat(registry.get("notification.delivery.end-to-end").timer().count()).isEqualTo(1);
+        assertThat(registry.get("notification.delivery.ack").timer().count()).isEqualTo(1);
+        assertThat(registry.get("notification.delivery.ack.duplicate").counter().count()).isEqualTo(2);
+        assertThat(registry.get("notification.delivery.ack.unmatched").counter().count()).isZero();
+        assertThat(registry.get("notification.delivery.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void acksForUntrackedIdsAreCountedButNotRemembered() {
+        tracker = tracker(60000L, 100, 0L);
+
+        for (int i = 0; i < 1000; i++) {
+            tracker.acknowledged("forged-" + i, System.currentTimeMillis() - 5);
+        }
+
+        assertThat(registry.get("notification.delivery.ack.unmatched").counter().count()).isEqualTo(1000);
+        assertThat(registry.get("notification.delivery.ack.duplicate").counter().count()).isZero();
+        // Client-reported times stay out of the end-to-end SLO timer
+        assertThat(registry.get("notification.delivery.end-to-end").timer().count()).isZero();
+        assertThat(registry.get("notification.delivery.end-to-end.client-reported").timer().count()).isEqualTo(1000);
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(tracker, "acknowledged")).isEmpty();
+    }
+
+    @Test
+    void sweepDropsOnlyEntriesPastTheAckTimeout() throws Exception {
+        tracker = tracker(50L, 100, 0L);
+        tracker.persisted("old", System.nanoTime());
+        Thread.sleep(100);
+        tracker.persisted("fresh", System.nanoTime());
+
+        tracker.sweep();
+
+        assertThat(registry.get("notification.delivery.unacked").counter().count()).isEqualTo(1);
+        assertThat(registry.get("notification.delivery.in-flight").gauge().value()).isEqualTo(1);
+        tracker.acknowledged("fresh", null);
+        assertThat(registry.get("notification.delivery.end-to-end").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void overCapacityEvictsTheOldestWithoutCountingThemUnacked() {
+        tracker = tracker(60000L, 2, 0L);
+        tracker.persisted("a", System.nanoTime());
+        tracker.persisted("b", System.nanoTime());
+        tracker.acknowledged("a", null);
+        tracker.persisted("c", System.nanoTime());
+        tracker.persisted("d", System.nanoTime());
+
+        // "a" was already acked, so "b" is the oldest still tracked
+        assertThat(registry.get("notification.delivery.evicted").counter().count()).isEqualTo(1);
+        assertThat(registry.get("notification.delivery.unacked").counter().count()).isZero();
+        tracker.acknowledged("b", null);
+        tracker.acknowledged("c", null);
+        tracker.acknowledged("d", null);
+        assertThat(registry.get("notification.delivery.ack.unmatched").counter().count()).isEqualTo(1);
+        assertThat(registry.get("notification.delivery.end-to-end").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void sweepRunsOnItsOwnTimerWithoutFurtherInserts() throws Exception {
+        tracker = tracker(30L, 100, 10L);
+        tracker.persisted("n1", System.nanoTime());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.get("notification.delivery.unacked").counter().count() < 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(registry.get("notification.delivery.unacked").counter().count()).isEqualTo(1);
+        assertThat(registry.get("notification.delivery.in-flight").gauge().value()).isZero();
+    }
+
+    private NotificationLatencyTracker tracker(long ackTimeoutMillis, int maxInFlight, long sweepIntervalMillis) {
+        NotificationLatencyTracker tracker = new NotificationLatencyTracker();
+        ReflectionTestUtils.setField(tracker, "meterRegistry", registry);
+        ReflectionTestUtils.setField(tracker, "ackTimeoutMillis", ackTimeoutMillis);
+        ReflectionTestUtils.setField(tracker, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(tracker, "sweepIntervalMillis", sweepIntervalMillis);
+        tracker.start();
+        return tracker;
+    }
+}
@@ -0,0 +1,253 @@
+package com.javacodeex.service;
+
+import com.google.cloud.Timestamp;
+import com.javacodeex.model.Notification;
+import com.javacodeex.model.Post;
+import com.javacodeex.repository.NotificationRepository;
+import com.javacodeex.repository.PostRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Performance and regression suite for NotificationService on the local
+// Firestore emulator; runs only with -Pfirestore-perf (see pom.xml). Inboxes of
+// several sizes are seeded, then create, list, unread-count and markAllAsRead
+// run at several concurrency levels. p50/p95 latency and throughput are written
+// to perf.results and checked against perf.baseline: p95 may not grow, nor
+// throughput drop, by more than perf.threshold, and a missing baseline or a
+// measurement without a baseline entry fails the run. The emulator does not enforce
+// composite indexes, so this guards our query and write paths, not the index
+// definitions that findByEmailOrderByTimestampDesc needs in production.
+@Tag("firestore-perf")
+@EnabledIfEnvironmentVariable(named = "FIRESTORE_EMULATOR_HOST", matches = ".+")
+@SpringBootTest
+@ActiveProfiles("firestore-emulator")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class NotificationServicePerformanceTests {
+
+    private static final int[] INBOX_SIZES = {50, 500, 2000};
+    private static final int[] CONCURRENCY = {1, 8, 32};
+    private static final int OPERATIONS = 200;
+    private static final int MIN_OPERATIONS = 20;
+    private static final double UNREAD_RATIO = 0.1;
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+    private static final String HEADER = """
+            # Baseline for the firestore-perf suite (NotificationServicePerformanceTests), one entry per
+            # <operation>[.inbox<size>].c<concurrency>.{p50-ms,p95-ms,throughput-ops}; only p95-ms and
+            # throughput-ops are checked, and a measured operation without an entry fails the run.
+            # Regenerate on the machine that runs the suite:
+            #   mvn -Pfirestore-perf test -Dperf.update-baseline=true""";
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    // Every run writes under its own emails, so a shared emulator can't skew counts
+    // and earlier runs' data can stay
+    private final String run = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, Double> results = new TreeMap<>();
+    private final List<String> regressions = new ArrayList<>();
+    private final Properties baseline = new Properties();
+    private double threshold;
+    private boolean updateBaseline;
+
+    @BeforeAll
+    void setUp() throws Exception {
+        threshold = Double.parseDouble(System.getProperty("perf.threshold", "0.25"));
+        updateBaseline = Boolean.getBoolean("perf.update-baseline");
+        if (!updateBaseline) {
+            assertThat(baselinePath()).as("Firestore performance baseline; create it with -Dperf.update-baseline=true").exists();
+            try (Reader reader = Files.newBufferedReader(baselinePath())) {
+                baseline.load(reader);
+            }
+            assertThat(baseline).as("Entries in %s; regenerate it with -Dperf.update-baseline=true", baselinePath()).isNotEmpty();
+        }
+        for (int size : INBOX_SIZES) {
+            seed(inbox(size), size, (int) (size * UNREAD_RATIO));
+        }
+        postRepository.save(new Post(postName(), "Perf Organization", inbox("created"))).block(TIMEOUT);
+        // Warm up the gRPC channel and the JIT before anything is timed
+        measure(null, 100, 8, i -> notificationService.getUnreadNotificationCount(inbox(INBOX_SIZES[0])));
+    }
+
+    @AfterAll
+    void report() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        results.forEach((key, value) -> lines.add(key + "=" + String.format(Locale.ROOT, "%.2f", value)));
+        Path target = updateBaseline ? baselinePath() : Paths.get(System.getProperty("perf.results", "target/firestore-perf-results.properties"));
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        Files.write(target, lines);
+        System.out.println("Firestore performance results written to " + target.toAbsolutePath());
+
+        assertThat(regressions)
+                .as("Regressed by more than %.0f%% against %s", threshold * 100, baselinePath())
+                .isEmpty();
+    }
+
+    @Test
+    void createNotification() {
+        for (int concurrency : CONCURRENCY) {
+            measure("create.c" + concurrency, OPERATIONS, concurrency,
+                    i -> notificationService.createVolunteerApplicationNotification("Volunteer " + i, null, postName(), "volunteer" + i + "@example.com"));
+        }
+
+        assertThat(notificationService.getNotificationCount(inbox("created")).block(TIMEOUT))
+                .isEqualTo((long) OPERATIONS * CONCURRENCY.length);
+    }
+
+    @Test
+    void listNotifications() {
+        for (int size : INBOX_SIZES) {
+            String email = inbox(size);
+            List<Notification> listed = notificationService.getNotificationsByEmail(email).collectList().block(TIMEOUT);
+            assertThat(listed).hasSize(size);
+            assertThat(listed).isSortedAccordingTo(Comparator.comparing(Notification::getTimestamp).reversed());
+
+            for (int concurrency : CONCURRENCY) {
+                measure("list.inbox" + size + ".c" + concurrency, operations(size), concurrency,
+                        i -> notificationService.getNotificationsByEmail(email).count());
+            }
+        }
+    }
+
+    @Test
+    void countUnread() {
+        for (int size : INBOX_SIZES) {
+            String email = inbox(size);
+            assertThat(notificationService.getUnreadNotificationCount(email).block(TIMEOUT))
+                    .isEqualTo((long) (size * UNREAD_RATIO));
+
+            for (int concurrency : CONCURRENCY) {
+                measure("unread-count.inbox" + size + ".c" + concurrency, OPERATIONS, concurrency,
+                        i -> notificationService.getUnreadNotificationCount(email));
+            }
+        }
+    }
+
+    @Test
+    void markAllAsRead() {
+        for (int size : INBOX_SIZES) {
+            int unread = (int) (size * UNREAD_RATIO);
+            for (int concurrency : CONCURRENCY) {
+                // One fresh inbox per call, since the first call leaves nothing unread. Only the unread
+                // share of an inbox of this size is seeded: the query never touches the read ones
+                String prefix = "mark-" + size + "-c" + concurrency + "-";
+                for (int i = 0; i < MIN_OPERATIONS; i++) {
+                    seed(inbox(prefix + i), unread, unread);
+                }
+
+                measure("mark-all-read.inbox" + size + ".c" + concurrency, MIN_OPERATIONS, concurrency,
+                        i -> notificationService.markAllAsRead(inbox(prefix + i)).count());
+
+                assertThat(notificationService.getUnreadNotificationCount(inbox(prefix + 0)).block(TIMEOUT)).isZero();
+            }
+        }
+    }
+
+    // Runs the operations with at most `concurrency` in flight; key == null only warms up
+    private void measure(String key, int operations, int concurrency, IntFunction<Mono<?>> operation) {
+        long[] latencies = new long[operations];
+        long start = System.nanoTime();
+        Flux.range(0, operations)
+                .flatMap(i -> Mono.defer(() -> {
+                    long begin = System.nanoTime();
+                    return operation.apply(i).then().doOnTerminate(() -> latencies[i] = System.nanoTime() - begin);
+                }), concurrency)
+                .blockLast(TIMEOUT);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (key == null) {
+            return;
+        }
+
+        Arrays.sort(latencies);
+        double p50 = latencies[(operations - 1) / 2] / 1e6;
+        double p95 = latencies[(int) Math.ceil(operations * 0.95) - 1] / 1e6;
+        double throughput = operations / seconds;
+        results.put(key + ".p50-ms", p50);
+        results.put(key + ".p95-ms", p95);
+        results.put(key + ".throughput-ops", throughput);
+        System.out.printf(Locale.ROOT, "%-36s p50 %9.2f ms  p95 %9.2f ms  %9.1f ops/s%n", key, p50, p95, throughput);
+
+        check(key + ".p95-ms", p95, true);
+        check(key + ".throughput-ops", throughput, false);
+    }
+
+    private void check(String key, double value, boolean lowerIsBetter) {
+        if (updateBaseline) {
+            return;
+        }
+        String recorded = baseline.getProperty(key);
+        if (recorded == null) {
+            regressions.add(key + ": no baseline entry");
+            return;
+        }
+        double expected = Double.parseDouble(recorded);
+        boolean regressed = lowerIsBetter ? value > expected * (1 + threshold) : value < expected * (1 - threshold);
+        if (regressed) {
+            regressions.add(String.format(Locale.ROOT, "%s: %.2f against baseline %.2f", key, value, expected));
+        }
+    }
+
+    // Newest first, a minute apart; the first `unread` are unread
+    private void seed(String email, int size, int unread) {
+        long now = Timestamp.now().getSeconds();
+        List<Notification> notifications = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            notifications.add(new Notification("volunteer", "Volunteer " + i + " is applied for Beach Cleanup",
+                    i >= unread, Timestamp.ofTimeSecondsAndNanos(now - i * 60L, 0), email));
+        }
+        notificationRepository.saveAll(notifications).blockLast(TIMEOUT);
+    }
+
+    // Fewer calls on large inboxes, so every size reads a similar number of documents
+    private static int operations(int inboxSize) {
+        return Math.max(MIN_OPERATIONS, OPERATIONS * INBOX_SIZES[0] / inboxSize);
+    }
+
+    private String inbox(Object name) {
+        return "perf-" + run + "-" + name + "@example.com";
+    }
+
+    private String postName() {
+        return "Perf Cleanup " + run;
+    }
+
+    private Path baselinePath() {
+        return Paths.get(System.getProperty("perf.baseline", "src/test/resources/firestore-perf-baseline.properties"));
+    }
+}
@@ -0,0 +1,142 @@
+package com.javacodeex.service;
+
+import com.javacodeex.model.Post;
+import com.javacodeex.repository.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrganizationResolverTests {
+
+    private static final String DEFAULT_EMAIL = "default@example.com";
+
+    private PostRepository postRepository;
+    private OrganizationResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        postRepository = mock(PostRepository.class);
+        resolver = new OrganizationResolver();
+        ReflectionTestUtils.setField(resolver, "postRepository", postRepository);
+        ReflectionTestUtils.setField(resolver, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(resolver, "defaultOrganizationEmail", DEFAULT_EMAIL);
+        ReflectionTestUtils.setField(resolver, "maxSize", 100L);
+        ReflectionTestUtils.setField(resolver, "refreshAfterMillis", 60_000L);
+        ReflectionTestUtils.setField(resolver, "expireAfterMillis", 600_000L);
+        ReflectionTestUtils.setField(resolver, "negativeTtlMillis", 60_000L);
+        ReflectionTestUtils.setField(resolver, "preload", false);
+    }
+
+    @Test
+    void resolvesEachPostFromTheBackendOnce() {
+        when(postRepository.findById("p1")).thenReturn(Mono.just(post("p1", "Beach Cleanup", "green@example.com")));
+        resolver.start();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(resolver.resolveOrganizationEmail("p1", "Beach Cleanup").block()).isEqualTo("green@example.com");
+        }
+
+        verify(postRepository, times(1)).findById("p1");
+    }
+
+    @Test
+    void cachesUnknownPostsAndRoutesThemToTheDefault() {
+        when(postRepository.findByName("Missing")).thenReturn(Flux.empty());
+        resolver.start();
+
+        assertThat(resolver.resolveOrganizationEmail(null, "Missing").block()).isEqualTo(DEFAULT_EMAIL);
+        assertThat(resolver.resolveOrganizationEmail(null, "Missing").block()).isEqualTo(DEFAULT_EMAIL);
+
+        verify(postRepository, times(1)).findByName("Missing");
+    }
+
+    @Test
+    void preloadAnswersByIdAndNameWithoutLookups() {
+        when(postRepository.findAll()).thenReturn(Flux.just(
+                post("p1", "Beach Cleanup", "green@example.com"),
+                post("p2", "Tree Planting", "trees@example.com")));
+        resolver.start();
+
+        resolver.preload().block();
+
+        assertThat(resolver.resolveOrganizationEmail("p2", null).block()).isEqualTo("trees@example.com");
+        assertThat(resolver.resolveOrganizationEmail(null, "Beach Cleanup").block()).isEqualTo("green@example.com");
+        verify(postRepository, never()).findById(anyString());
+        verify(postRepository, never()).findByName(anyString());
+    }
+
+    @Test
+    void refusesANameSharedBySeveralPosts() {
+        when(postRepository.findByName("Beach Cleanup")).thenReturn(Flux.just(
+                post("p1", "Beach Cleanup", "green@example.com"),
+                post("p2", "Beach Cleanup", "blue@example.com")));
+        when(postRepository.findById("p2")).thenReturn(Mono.just(post("p2", "Beach Cleanup", "blue@example.com")));
+        resolver.start();
+
+        assertThatThrownBy(() -> resolver.resolveOrganizationEmail(null, "Beach Cleanup").block())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(resolver.resolveOrganizationEmail("p2", "Beach Cleanup").block()).isEqualTo("blue@example.com");
+    }
+
+    @Test
+    void preloadRefusesDuplicateNames() {
+        when(postRepository.findAll()).thenReturn(Flux.just(
+                post("p1", "Beach Cleanup", "green@example.com"),
+                post("p2", "Beach Cleanup", "blue@example.com"),
+                post("p3", "Tree Planting", "trees@example.com")));
+        resolver.start();
+
+        resolver.preload().block();
+
+        assertThatThrownBy(() -> resolver.resolveOrganizationEmail(null, "Beach Cleanup").block())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(resolver.resolveOrganizationEmail(null, "Tree Planting").block()).isEqualTo("trees@example.com");
+        assertThat(resolver.resolveOrganizationEmail("p1", null).block()).isEqualTo("green@example.com");
+        verify(postRepository, never()).findByName(anyString());
+    }
+
+    @Test
+    void surfacesLookupFailuresInsteadOfRoutingToTheDefault() {
+        when(postRepository.findById("p1")).thenReturn(Mono.error(new IllegalStateException("backend unavailable")));
+        resolver.start();
+
+        assertThatThrownBy(() -> resolver.resolveOrganizationEmail("p1", null).block())
+                .hasMessageContaining("backend unavailable");
+    }
+
+    @Test
+    void servesStaleValueWhileRefreshing() throws Exception {
+        ReflectionTestUtils.setField(resolver, "refreshAfterMillis", 50L);
+        when(postRepository.findById("p1"))
+                .thenReturn(Mono.just(post("p1", "Beach Cleanup", "old@example.com")))
+                .thenReturn(Mono.just(post("p1", "Beach Cleanup", "new@example.com")).delayElement(Duration.ofMillis(200)));
+        resolver.start();
+
+        assertThat(resolver.resolveOrganizationEmail("p1", null).block()).isEqualTo("old@example.com");
+        Thread.sleep(100);
+        // Past refresh-after: answered from cache at once, reload runs in the background
+        assertThat(resolver.resolveOrganizationEmail("p1", null).block(Duration.ofMillis(50))).isEqualTo("old@example.com");
+        Thread.sleep(400);
+        assertThat(resolver.resolveOrganizationEmail("p1", null).block()).isEqualTo("new@example.com");
+    }
+
+    private Post post(String id, String name, String organizationEmail) {
+        Post post = new Post(name, "Org " + id, organizationEmail);
+        post.setId(id);
+        return post;
+    }
+}
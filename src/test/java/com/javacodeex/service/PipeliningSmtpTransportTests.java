@@ -0,0 +1,241 @@
+package com.javacodeex.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import javax.net.SocketFactory;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Sends over one warm connection to a local SMTP stand-in, with and without
+// PIPELINING/CHUNKING advertised. Round trips are counted on the client socket:
+// each switch from writing to reading is one wait for the server, however the
+// bytes happen to be split into TCP segments.
+class PipeliningSmtpTransportTests {
+
+    private static final int MESSAGES = 10;
+    private static final int RECIPIENTS = 10;
+
+    private FakeSmtpServer server;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void pipeliningAndChunkingCutRoundTrips() throws Exception {
+        server = new FakeSmtpServer(0);
+        RoundTripCounter stock = new RoundTripCounter();
+        sendBatch(sender("false", stock));
+
+        server.setExtensions("PIPELINING", "CHUNKING");
+        RoundTripCounter pipelined = new RoundTripCounter();
+        sendBatch(sender("true", pipelined));
+
+        assertThat(server.getMessageCount()).isEqualTo(2 * MESSAGES);
+        assertThat(server.getRecipientCount()).isEqualTo(2 * MESSAGES * RECIPIENTS);
+        // Stock: MAIL + RCPT per recipient + DATA + body per message; pipelined: envelope + BDAT.
+        // Both also pay EHLO and QUIT once for the connection.
+        assertThat(stock.getRoundTrips()).isGreaterThanOrEqualTo(MESSAGES * (RECIPIENTS + 3));
+        assertThat(pipelined.getRoundTrips()).isLessThanOrEqualTo(MESSAGES * 2 + 4);
+    }
+
+    @Test
+    void fallsBackWithoutExtensions() throws Exception {
+        server = new FakeSmtpServer(0);
+
+        sendBatch(sender("true"));
+
+        assertThat(server.getMessageCount()).isEqualTo(MESSAGES);
+        assertThat(server.getRecipientCount()).isEqualTo(MESSAGES * RECIPIENTS);
+    }
+
+    @Test
+    void rejectedRecipientFailsThePipelinedSend() throws Exception {
+        server = new FakeSmtpServer(0);
+        server.setExtensions("PIPELINING");
+        server.setRejectedMarker("invalid");
+        JavaMailSenderImpl sender = sender("true");
+        MimeMessage message = message(sender, 0);
+        message.addRecipients(MimeMessage.RecipientType.TO, "invalid@example.com");
+
+        assertThatThrownBy(() -> sender.send(message))
+                .isInstanceOf(MailSendException.class)
+                .satisfies(e -> {
+                    Exception failure = ((MailSendException) e).getFailedMessages().values().iterator().next();
+                    assertThat(failure).isInstanceOf(SendFailedException.class);
+                    assertThat(((SendFailedException) failure).getInvalidAddresses()).hasSize(1);
+                });
+        assertThat(server.getMessageCount()).isZero();
+    }
+
+    @Test
+    void rejectedSenderIsAServerFailureNotABadMessage() throws Exception {
+        server = new FakeSmtpServer(0);
+        server.setExtensions("PIPELINING");
+        server.setFailing(true);
+        JavaMailSenderImpl sender = sender("true");
+        MimeMessage message = message(sender, 0);
+
+        assertThatThrownBy(() -> sender.send(message))
+                .isInstanceOf(MailSendException.class)
+                .satisfies(e -> {
+                    Exception failure = ((MailSendException) e).getFailedMessages().values().iterator().next();
+                    assertThat(failure).isInstanceOf(SendFailedException.class);
+                    assertThat(((SendFailedException) failure).getInvalidAddresses()).isNull();
+                    assertThat(MailFailures.isMessageFailure(e)).isFalse();
+                });
+    }
+
+    @Test
+    void pipelinedMailFromAnnouncesTheMessageSize() throws Exception {
+        server = new FakeSmtpServer(0);
+        server.setExtensions("PIPELINING", "CHUNKING", "SIZE");
+        JavaMailSenderImpl sender = sender("true");
+
+        sender.send(message(sender, 0));
+
+        assertThat(server.getLastMailFrom()).isEqualTo("MAIL FROM:<noreply@example.com> SIZE=" + server.getDataBytes());
+    }
+
+    private void sendBatch(JavaMailSenderImpl sender) throws MessagingException {
+        MimeMessage[] messages = new MimeMessage[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = message(sender, i);
+        }
+        // One connection for the whole batch, so only per-message round trips are counted
+        sender.send(messages);
+    }
+
+    private JavaMailSenderImpl sender(String pipelining) {
+        return sender(pipelining, null);
+    }
+
+    private JavaMailSenderImpl sender(String pipelining, RoundTripCounter counter) {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(server.getPort());
+        sender.getJavaMailProperties().put("mail.smtp.from", "noreply@example.com");
+        sender.getJavaMailProperties().put("mail.smtp.pipelining", pipelining);
+        sender.getJavaMailProperties().put("mail.smtp.chunksize", "1048576");
+        if (counter != null) {
+            sender.getJavaMailProperties().put("mail.smtp.socketFactory", counter);
+        }
+        return sender;
+    }
+
+    private MimeMessage message(JavaMailSenderImpl sender, int i) throws MessagingException {
+        MimeMessage message = sender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+        String[] to = new String[RECIPIENTS];
+        for (int r = 0; r < RECIPIENTS; r++) {
+            to[r] = "volunteer" + i + "-" + r + "@example.com";
+        }
+        helper.setTo(to);
+        helper.setSubject("Pipelining test " + i);
+        helper.setText("<p>Hello</p>", true);
+        return message;
+    }
+
+    // Hands JavaMail sockets whose streams count every read that follows a write
+    private static class RoundTripCounter extends SocketFactory {
+
+        private final AtomicInteger roundTrips = new AtomicInteger();
+        private final AtomicBoolean wrote = new AtomicBoolean();
+
+        int getRoundTrips() {
+            return roundTrips.get();
+        }
+
+        @Override
+        public Socket createSocket() {
+            return new Socket() {
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return new FilterInputStream(super.getInputStream()) {
+                        @Override
+                        public int read() throws IOException {
+                            countTurn();
+                            return super.read();
+                        }
+
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            countTurn();
+                            return super.read(b, off, len);
+                        }
+                    };
+                }
+
+                @Override
+                public OutputStream getOutputStream() throws IOException {
+                    return new FilterOutputStream(super.getOutputStream()) {
+                        @Override
+                        public void write(int b) throws IOException {
+                            wrote.set(true);
+                            out.write(b);
+                        }
+
+                        @Override
+                        public void write(byte[] b, int off, int len) throws IOException {
+                            wrote.set(true);
+                            out.write(b, off, len);
+                        }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return connect(host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return connect(host, port);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return connect(host.getHostAddress(), port);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return connect(address.getHostAddress(), port);
+        }
+
+        private Socket connect(String host, int port) throws IOException {
+            Socket socket = createSocket();
+            socket.connect(new InetSocketAddress(host, port));
+            return socket;
+        }
+
+        private void countTurn() {
+            if (wrote.getAndSet(false)) {
+                roundTrips.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+// Routes real SMTP conversations to local stand-ins with different latencies.
+class RoutingMailSenderTests {
+
+    private final List<FakeSmtpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (FakeSmtpServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    void spreadsSendsByWeight() throws Exception {
+        FakeSmtpServer fast = server(0);
+        FakeSmtpServer slow = server(5);
+        RoutingMailSender sender = sender(provider("fast", 3, fast), provider("slow", 1, slow));
+
+        for (int i = 0; i < 40; i++) {
+            sender.send(message(i));
+        }
+
+        assertThat(fast.getMessageCount()).isEqualTo(30);
+        assertThat(slow.getMessageCount()).isEqualTo(10);
+    }
+
+    @Test
+    void failsOverAndEjectsAFailingProvider() throws Exception {
+        FakeSmtpServer healthy = server(0);
+        FakeSmtpServer broken = server(0);
+        broken.setFailing(true);
+        RoutingMailSender sender = sender(provider("healthy", 1, healthy), provider("broken", 1, broken));
+
+        for (int i = 0; i < 40; i++) {
+            sender.send(message(i));
+        }
+
+        assertThat(healthy.getMessageCount()).isEqualTo(40);
+        // Ejected after min-requests failures, then not tried again within the cooldown
+        assertThat(sender.getProviders().get(1).getEjectionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void throwsWhenEveryProviderFails() throws Exception {
+        FakeSmtpServer broken = server(0);
+        broken.setFailing(true);
+        RoutingMailSender sender = sender(provider("broken", 1, broken));
+
+        assertThatThrownBy(() -> sender.send(message(0))).isInstanceOf(MailSendException.class);
+    }
+
+    @Test
+    void doesNotResendAMessageSomeRecipientsAlreadyAccepted() throws Exception {
+        JavaMailSender partial = mock(JavaMailSender.class);
+        SendFailedException failure = new SendFailedException("452 Too many recipients", null,
+                new Address[] {new InternetAddress("a@example.com")}, new Address[] {new InternetAddress("b@example.com")}, null);
+        doThrow(new MailSendException(Map.of(new Object(), failure))).when(partial).send(any(SimpleMailMessage.class));
+        FakeSmtpServer healthy = server(0);
+        RoutingMailSender sender = sender(new RoutingMailSender.Provider("partial", 1, partial), provider("healthy", 1, healthy));
+
+        assertThatThrownBy(() -> sender.send(message(0))).isInstanceOf(MailSendException.class);
+
+        assertThat(healthy.getMessageCount()).isZero();
+    }
+
+    private FakeSmtpServer server(long delayMillis) throws Exception {
+        FakeSmtpServer server = new FakeSmtpServer(delayMillis);
+        servers.add(server);
+        return server;
+    }
+
+    private RoutingMailSender.Provider provider(String name, int weight, FakeSmtpServer server) {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(server.getPort());
+        return new RoutingMailSender.Provider(name, weight, sender);
+    }
+
+    private RoutingMailSender sender(RoutingMailSender.Provider... providers) {
+        return new RoutingMailSender(List.of(providers), 3, 0.5, 10, 30_000, 30_000, new SimpleMeterRegistry());
+    }
+
+    private SimpleMailMessage message(int i) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("noreply@example.com");
+        message.setTo("volunteer" + i + "@example.com");
+        message.setSubject("Routing test " + i);
+        message.setText("Hello");
+        return message;
+    }
+}
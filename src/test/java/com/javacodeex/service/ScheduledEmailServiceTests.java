@@ -0,0 +1,163 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Journal replay across restarts and compaction of cancelled entries.
+class ScheduledEmailServiceTests {
+
+    @TempDir
+    Path dir;
+
+    private final List<ScheduledEmailService> started = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (ScheduledEmailService service : started) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void restartRestoresOnlyRemindersStillPending() throws Exception {
+        Path journal = dir.resolve("reminders.journal");
+        ScheduledEmailService first = service(journal, 100_000);
+        String kept = first.scheduleTaskReminder(reminder("kept@example.com"));
+        String cancelled = first.scheduleTaskReminder(reminder("cancelled@example.com"));
+        first.scheduleTaskReminder(reminder("also-kept@example.com"));
+        assertThat(first.cancel(cancelled)).isTrue();
+        first.stop();
+        started.remove(first);
+
+        ScheduledEmailService restarted = service(journal, 100_000);
+
+        assertThat(restarted.getPendingCount()).isEqualTo(2);
+        assertThat(restarted.cancel(cancelled)).isFalse();
+        assertThat(restarted.cancel(kept)).isTrue();
+        // Replay rewrote the journal with just the two live reminders, then one cancel was appended
+        assertThat(Files.readAllLines(journal)).hasSize(3);
+    }
+
+    @Test
+    void skipsATornLastLine() throws Exception {
+        Path journal = dir.resolve("reminders.journal");
+        ScheduledEmailService first = service(journal, 100_000);
+        first.scheduleTaskReminder(reminder("kept@example.com"));
+        first.stop();
+        started.remove(first);
+        Files.writeString(journal, Files.readString(journal) + "S {\"id\":\"torn");
+
+        ScheduledEmailService restarted = service(journal, 100_000);
+
+        assertThat(restarted.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void compactsOnceCancelledRecordsDominate() throws Exception {
+        Path journal = dir.resolve("reminders.journal");
+        ScheduledEmailService service = service(journal, 20);
+        String live = service.scheduleTaskReminder(reminder("live@example.com"));
+        for (int i = 0; i < 20; i++) {
+            service.cancel(service.scheduleTaskReminder(reminder("user" + i + "@example.com")));
+        }
+
+        // 41 records were written; the compaction left only the live reminder plus what followed it
+        List<String> lines = Files.readAllLines(journal);
+        assertThat(lines.size()).isLessThan(41);
+        assertThat(lines).anyMatch(line -> line.startsWith("S ") && line.contains(live));
+        assertThat(service.getPendingCount()).isEqualTo(1);
+
+        service.stop();
+        started.remove(service);
+        assertThat(service(journal, 20).getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failedSendStaysJournalledAndIsRetried() throws Exception {
+        Path journal = dir.resolve("reminders.journal");
+        EmailService emailService = mock(EmailService.class);
+        when(emailService.queueTaskReminderEmail(any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new MailSendException("Connection refused")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        ScheduledEmailService service = service(journal, 100_000, emailService);
+        ScheduledEmailService.ScheduledReminder reminder = reminder("due@example.com");
+        reminder.setDeliverAt(System.currentTimeMillis());
+        String id = service.scheduleTaskReminder(reminder);
+
+        verify(emailService, timeout(5000).times(2)).queueTaskReminderEmail(any(), any(), any(), any(), any(), any());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.readAllLines(journal).contains("D " + id) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // One delivered record, written after the retry succeeded
+        assertThat(Files.readAllLines(journal)).filteredOn(line -> line.startsWith("D ")).containsExactly("D " + id);
+        assertThat(service.getPendingCount()).isZero();
+    }
+
+    @Test
+    void badMessageIsNotRetried() throws Exception {
+        Path journal = dir.resolve("reminders.journal");
+        EmailService emailService = mock(EmailService.class);
+        when(emailService.queueTaskReminderEmail(any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new MailParseException("Illegal address")));
+        ScheduledEmailService service = service(journal, 100_000, emailService);
+        ScheduledEmailService.ScheduledReminder reminder = reminder("bad@example.com");
+        reminder.setDeliverAt(System.currentTimeMillis());
+        String id = service.scheduleTaskReminder(reminder);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.readAllLines(journal).contains("D " + id) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(Files.readAllLines(journal)).contains("D " + id);
+        assertThat(service.getPendingCount()).isZero();
+    }
+
+    private ScheduledEmailService service(Path journal, long compactThreshold) throws Exception {
+        return service(journal, compactThreshold, mock(EmailService.class));
+    }
+
+    private ScheduledEmailService service(Path journal, long compactThreshold, EmailService emailService) throws Exception {
+        ScheduledEmailService service = new ScheduledEmailService();
+        ReflectionTestUtils.setField(service, "emailService", emailService);
+        ReflectionTestUtils.setField(service, "initialBackoffMillis", 50L);
+        ReflectionTestUtils.setField(service, "maxBackoffMillis", 1000L);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "tickMillis", 100L);
+        ReflectionTestUtils.setField(service, "releaseBatchSize", 50);
+        ReflectionTestUtils.setField(service, "journalPath", journal.toString());
+        ReflectionTestUtils.setField(service, "compactThreshold", compactThreshold);
+        service.start();
+        started.add(service);
+        return service;
+    }
+
+    // Due long after the test ends, so nothing is released to the sender
+    private static ScheduledEmailService.ScheduledReminder reminder(String to) {
+        ScheduledEmailService.ScheduledReminder reminder = new ScheduledEmailService.ScheduledReminder();
+        reminder.setTo(to);
+        reminder.setTaskTitle("Beach Cleanup");
+        reminder.setDeliverAt(System.currentTimeMillis() + 24L * 60 * 60 * 1000);
+        return reminder;
+    }
+}
@@ -0,0 +1,116 @@
+package com.javacodeex.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SendAdmissionLimiterTests {
+
+    private final MailDispatcher dispatcher = mock(MailDispatcher.class);
+
+    @Test
+    void rejectsOnceInFlightReachesTheLimit() {
+        SendAdmissionLimiter limiter = limiter(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+        assertThat(limiter.tryAcquire()).isFalse();
+        limiter.release();
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void rejectsWhileTheBulkLaneIsBackedUp() {
+        SendAdmissionLimiter limiter = limiter(4);
+        when(dispatcher.getQueueDepth(MailDispatcher.Lane.BULK)).thenReturn(100);
+
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void limitBacksOffOnSlowSmtpAndRecoversWhenFast() throws Exception {
+        SendAdmissionLimiter limiter = limiter(32);
+        ReflectionTestUtils.setField(limiter, "backoffIntervalMillis", 0L);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.onSend(TimeUnit.SECONDS.toNanos(5), null);
+        }
+        int backedOff = limiter.getLimit();
+        for (int i = 0; i < 2000; i++) {
+            fill(limiter);
+            limiter.onSend(TimeUnit.MILLISECONDS.toNanos(50), null);
+        }
+
+        assertThat(backedOff).isLessThan(32).isGreaterThanOrEqualTo(4);
+        assertThat(limiter.getLimit()).isGreaterThan(backedOff);
+    }
+
+    @Test
+    void limitDoesNotGrowWhileMostlyIdle() {
+        SendAdmissionLimiter limiter = limiter(32);
+        for (int i = 0; i < 20; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+
+        // 20 of 32 in flight is below 80%
+        for (int i = 0; i < 2000; i++) {
+            limiter.onSend(TimeUnit.MILLISECONDS.toNanos(50), null);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(32);
+    }
+
+    @Test
+    void invalidRecipientsDoNotBackOff() throws Exception {
+        SendAdmissionLimiter limiter = limiter(32);
+        ReflectionTestUtils.setField(limiter, "backoffIntervalMillis", 0L);
+        Address[] invalid = {new InternetAddress("nobody@example.com")};
+        MailSendException rejected = new MailSendException(Map.of(new Object(),
+                new SendFailedException("550 No such user", null, null, null, invalid)));
+
+        for (int i = 0; i < 10; i++) {
+            limiter.onSend(TimeUnit.MILLISECONDS.toNanos(50), rejected);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(32);
+
+        limiter.onSend(TimeUnit.MILLISECONDS.toNanos(50), new MailSendException("Connection refused"));
+        assertThat(limiter.getLimit()).isLessThan(32);
+    }
+
+    // Admit requests up to the current limit
+    private void fill(SendAdmissionLimiter limiter) {
+        while (limiter.tryAcquire()) {
+            // keep admitting
+        }
+    }
+
+    private SendAdmissionLimiter limiter(int initialLimit) {
+        SendAdmissionLimiter limiter = new SendAdmissionLimiter();
+        ReflectionTestUtils.setField(limiter, "dispatcher", dispatcher);
+        ReflectionTestUtils.setField(limiter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(limiter, "initialLimit", initialLimit);
+        ReflectionTestUtils.setField(limiter, "minLimit", 4);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 512);
+        ReflectionTestUtils.setField(limiter, "latencyTargetMillis", 1500L);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.9);
+        ReflectionTestUtils.setField(limiter, "increaseUtilization", 0.8);
+        ReflectionTestUtils.setField(limiter, "backoffIntervalMillis", 1000L);
+        ReflectionTestUtils.setField(limiter, "maxQueueDepth", 100);
+        ReflectionTestUtils.setField(limiter, "retryAfterSeconds", 2);
+        limiter.start();
+        return limiter;
+    }
+}
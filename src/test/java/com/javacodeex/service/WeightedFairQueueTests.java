@@ -0,0 +1,83 @@
+package com.javacodeex.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeightedFairQueueTests {
+
+    @Test
+    void backloggedTenantsShareInProportionToWeight() throws Exception {
+        Map<String, Integer> weights = Map.of("big", 3, "small", 1);
+        WeightedFairQueue<String> queue = new WeightedFairQueue<>(weights::get, 10_000, 100_000);
+        for (int i = 0; i < 1000; i++) {
+            queue.put("big", "big");
+            queue.put("small", "small");
+        }
+
+        Map<String, Integer> served = new HashMap<>();
+        for (int i = 0; i < 400; i++) {
+            served.merge(queue.poll(), 1, Integer::sum);
+        }
+
+        assertThat(served.get("big")).isEqualTo(300);
+        assertThat(served.get("small")).isEqualTo(100);
+    }
+
+    @Test
+    void lateTenantIsServedAheadOfAnExistingBacklog() throws Exception {
+        WeightedFairQueue<String> queue = new WeightedFairQueue<>(tenant -> 1, 10_000, 100_000);
+        for (int i = 0; i < 1000; i++) {
+            queue.put("campaign", "campaign");
+        }
+        queue.poll();
+        queue.put("other", "other");
+
+        assertThat(queue.poll()).isEqualTo("other");
+        assertThat(queue.size("campaign")).isEqualTo(999);
+    }
+
+    @Test
+    void drainedTenantsAreDropped() throws Exception {
+        WeightedFairQueue<String> queue = new WeightedFairQueue<>(tenant -> 1, 10, 100_000);
+        for (int i = 0; i < 1000; i++) {
+            queue.put("tenant-" + i, "item");
+        }
+        assertThat(queue.tenantCount()).isEqualTo(1000);
+
+        while (queue.poll() != null) {
+            // drain
+        }
+
+        assertThat(queue.tenantCount()).isZero();
+    }
+
+    @Test
+    void putBlockedOnQuotaLandsInTheCurrentTenantQueue() throws Exception {
+        WeightedFairQueue<String> queue = new WeightedFairQueue<>(tenant -> 1, 1, 100);
+        queue.put("org", "first");
+        Thread blocked = new Thread(() -> {
+            try {
+                queue.put("org", "second");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        blocked.start();
+        while (blocked.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        // Draining "org" drops its queue while the put is still waiting on it
+        assertThat(queue.poll()).isEqualTo("first");
+        blocked.join(5000);
+
+        assertThat(queue.size("org")).isEqualTo(1);
+        assertThat(queue.tenantCount()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo("second");
+        assertThat(queue.tenantCount()).isZero();
+    }
+}
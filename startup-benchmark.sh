@@ -0,0 +1,78 @@
+#!/bin/bash
+
+# Startup benchmark: time-to-first-request and resident memory, default launch vs fast start
+#
+#   ./startup-benchmark.sh [runs]
+#
+# Each run starts the app, polls /email/health until it answers, and records the
+# elapsed wall time and the process RSS at that moment. Build first:
+#   ./mvnw -B -DskipTests package && ./faststart.sh build
+# (faststart.sh build repackages the jar with AOT, so the default run then uses the
+# same jar without -Dspring.aot.enabled, which ignores the generated code.)
+
+set -e
+cd "$(dirname "$0")"
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+URL="http://localhost:$PORT/email/health"
+JAR=target/spring-boot-mail-0.0.1-SNAPSHOT.jar
+FAST_DIR=target/faststart
+
+if [ ! -f "$JAR" ] || [ ! -f "$FAST_DIR/application.jsa" ]; then
+    echo "Build first: ./mvnw -B -DskipTests package && ./faststart.sh build" >&2
+    exit 1
+fi
+
+now_millis() {
+    date +%s%3N
+}
+
+rss_kb() {
+    if [ -r "/proc/$1/status" ]; then
+        awk '/VmRSS/ { print $2 }' "/proc/$1/status"
+    else
+        ps -o rss= -p "$1" | tr -d ' '
+    fi
+}
+
+# measure <label> <command...>: prints "<millis> <rss kb>" for one run
+measure() {
+    local start pid elapsed rss
+    start=$(now_millis)
+    "$@" --server.port="$PORT" > /dev/null 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "$URL"; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "Application exited before answering" >&2
+            exit 1
+        fi
+        sleep 0.02
+    done
+    elapsed=$(( $(now_millis) - start ))
+    rss=$(rss_kb "$pid")
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    echo "$elapsed $rss"
+}
+
+report() {
+    local label=$1
+    shift
+    local results=()
+    for i in $(seq "$RUNS"); do
+        results+=("$(measure "$@")")
+    done
+    printf '%s\n' "${results[@]}" | sort -n | awk -v label="$label" '
+        { ttfr[NR] = $1; rss[NR] = $2; total += $2 }
+        END {
+            printf "%-10s runs=%d  first-request ms: min=%d median=%d max=%d  rss MB: avg=%.1f\n",
+                label, NR, ttfr[1], ttfr[int((NR + 1) / 2)], ttfr[NR], total / NR / 1024
+        }'
+}
+
+echo "Startup benchmark ($RUNS runs each)"
+report default java -jar "$JAR"
+report faststart java -XX:SharedArchiveFile="$FAST_DIR/application.jsa" \
+    -Dspring.aot.enabled=true -Dspring.profiles.active=faststart \
+    -jar "$FAST_DIR/spring-boot-mail-0.0.1-SNAPSHOT.jar"